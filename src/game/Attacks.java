@@ -0,0 +1,195 @@
+package game;
+
+public class Attacks {
+
+    private static final long NOT_A = 0xfefefefefefefefeL;
+    private static final long NOT_AB = 0xfcfcfcfcfcfcfcfcL;
+    private static final long NOT_H = 0x7f7f7f7f7f7f7f7fL;
+    private static final long NOT_GH = 0x3f3f3f3f3f3f3f3fL;
+
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {-1, -1}, {-1, 1}, {1, -1}};
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+
+    // Magic lookup: the relevant occupancy times the magic, shifted down, indexes that square's slice.
+    // The magics were found offline by random trial and are checked against ray walks when the tables fill.
+    private static final long[] BISHOP_MAGIC = {
+            0x02418c08020120a0L, 0x476002009200810cL, 0x43210e0682000809L, 0x601804a100015001L,
+            0x0c020210e0080108L, 0x0806121004100000L, 0xc401040282408000L, 0x0800940096082001L,
+            0x4000089010420040L, 0x00000204190a2200L, 0x0000100420882500L, 0x0000892042010500L,
+            0x08200848400c8400L, 0x2000111022101003L, 0x00000e2104202420L, 0x0811208084504201L,
+            0x1108002008910840L, 0x0012044478180300L, 0x2088040410441600L, 0x0a30228808401082L,
+            0x2101000c90400008L, 0x4444080201042200L, 0x4310800062101010L, 0x0030500224040432L,
+            0x0228250020153005L, 0x180202b020040c00L, 0x0090500101010200L, 0x0010040028440088L,
+            0x400080200a020040L, 0x08048a0201080210L, 0x000c208002482400L, 0x0000808001006800L,
+            0x8028062841d26043L, 0x081442020d081000L, 0x1002004040842100L, 0x0000020080080080L,
+            0x0080440400004100L, 0x0010008288020200L, 0x004828008c010880L, 0x1006040840023200L,
+            0x0490840440102200L, 0x0580840120300900L, 0x0002402409011001L, 0x4a00044208002080L,
+            0xa000100202000490L, 0x0018100c80218200L, 0x8002020802084108L, 0x8001482101070040L,
+            0x2180940420040a20L, 0x20b6020344128200L, 0x3400084a00d00020L, 0x19008008840c4004L,
+            0x4000804022820001L, 0xc2800c94f8020800L, 0x0004211802218201L, 0x0020022081010200L,
+            0x00c1008200824100L, 0x8048020082011010L, 0x2000200439080800L, 0x0080000090420200L,
+            0x0808072044250400L, 0x4000002082521202L, 0x8000400342020200L, 0x80a0013202830208L};
+    private static final long[] ROOK_MAGIC = {
+            0x0080102080004004L, 0x0240041000402002L, 0x0180200010008108L, 0x01000a2004100100L,
+            0x0200020010042008L, 0x2600010842000450L, 0x0400040088500201L, 0x2080002040800900L,
+            0x0600800040008029L, 0xc800400040201000L, 0x4580801000200080L, 0x4810800800831002L,
+            0x4081000411000802L, 0x0012000408100200L, 0x0203010002000104L, 0x0201800041000480L,
+            0x4080004040002000L, 0x0800818020004011L, 0x0200110020010440L, 0x0008808010000800L,
+            0x0485010011050800L, 0x0801010002080400L, 0x2041040008011002L, 0x4120020000804114L,
+            0x0480208080004000L, 0x5080400040201001L, 0x4180100080200080L, 0x0002900280080080L,
+            0x0800080100110004L, 0xaa50200801108440L, 0x8000100400810208L, 0x080000860003004cL,
+            0x4000804000800020L, 0x0000862004804001L, 0x8000100080802004L, 0x0101002009001004L,
+            0x0100080081800c00L, 0x2502000280800400L, 0x930600441200080dL, 0x000100088100204aL,
+            0x0000803840008000L, 0x1050102000404000L, 0x0010002804002000L, 0x0008090010010020L,
+            0xa004008040080800L, 0x0050040002008080L, 0x0043000200010104L, 0x0100004084020021L,
+            0x4a0200db00208200L, 0x0000400020008080L, 0x0009002000401100L, 0x6200100080080080L,
+            0x0022001020050a00L, 0x0002040002008080L, 0x0008300108920400L, 0x006c308100441200L,
+            0x141480010150204dL, 0x4002050010244282L, 0x000011002000400dL, 0x2010009060050901L,
+            0x100a000410082002L, 0x0009000802040001L, 0x0109000082000421L, 0x040994250402c082L};
+
+    private static final long[] BISHOP_MASK = new long[64];
+    private static final int[] BISHOP_SHIFT = new int[64];
+    private static final int[] BISHOP_OFFSET = new int[64];
+    private static final long[] BISHOP_TABLE;
+    private static final long[] ROOK_MASK = new long[64];
+    private static final int[] ROOK_SHIFT = new int[64];
+    private static final int[] ROOK_OFFSET = new int[64];
+    private static final long[] ROOK_TABLE;
+
+    // BETWEEN holds the squares strictly between two aligned squares, LINE the whole line through them
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            long b = 1L << sq;
+            long one = ((b << 1) & NOT_A) | ((b >>> 1) & NOT_H);
+            long two = ((b << 2) & NOT_AB) | ((b >>> 2) & NOT_GH);
+            KNIGHT[sq] = (one << 16) | (one >>> 16) | (two << 8) | (two >>> 8);
+            KING[sq] = (one | b | ((one | b) << 8) | ((one | b) >>> 8)) & ~b;
+            PAWN[0][sq] = one << 8;
+            PAWN[1][sq] = one >>> 8;
+        }
+
+        BISHOP_TABLE = initMagics(BISHOP_DIRECTIONS, BISHOP_MASK, BISHOP_MAGIC, BISHOP_SHIFT, BISHOP_OFFSET);
+        ROOK_TABLE = initMagics(ROOK_DIRECTIONS, ROOK_MASK, ROOK_MAGIC, ROOK_SHIFT, ROOK_OFFSET);
+
+        for (int from = 0; from < 64; from++) {
+            for (int to = 0; to < 64; to++) {
+                long bit = 1L << to;
+                if ((bishop(from, 0) & bit) != 0) {
+                    BETWEEN[from][to] = bishop(from, bit) & bishop(to, 1L << from);
+                    LINE[from][to] = (bishop(from, 0) & bishop(to, 0)) | (1L << from) | bit;
+                }
+                else if ((rook(from, 0) & bit) != 0) {
+                    BETWEEN[from][to] = rook(from, bit) & rook(to, 1L << from);
+                    LINE[from][to] = (rook(from, 0) & rook(to, 0)) | (1L << from) | bit;
+                }
+            }
+        }
+    }
+
+    private Attacks() {}
+
+    public static long knight(int sq) {
+        return KNIGHT[sq];
+    }
+
+    public static long king(int sq) {
+        return KING[sq];
+    }
+
+    public static long pawn(int sq, boolean white) {
+        return PAWN[white ? 0 : 1][sq];
+    }
+
+    public static long bishop(int sq, long occupied) {
+        return BISHOP_TABLE[BISHOP_OFFSET[sq] +
+                (int) (((occupied & BISHOP_MASK[sq]) * BISHOP_MAGIC[sq]) >>> BISHOP_SHIFT[sq])];
+    }
+
+    public static long rook(int sq, long occupied) {
+        return ROOK_TABLE[ROOK_OFFSET[sq] +
+                (int) (((occupied & ROOK_MASK[sq]) * ROOK_MAGIC[sq]) >>> ROOK_SHIFT[sq])];
+    }
+
+    public static long queen(int sq, long occupied) {
+        return bishop(sq, occupied) | rook(sq, occupied);
+    }
+
+    public static long forPiece(PieceType type, int sq, long occupied) {
+        switch (type) {
+            case KING:
+                return king(sq);
+            case QUEEN:
+                return queen(sq, occupied);
+            case BISHOP:
+                return bishop(sq, occupied);
+            case KNIGHT:
+                return knight(sq);
+            case ROOK:
+                return rook(sq, occupied);
+        }
+        return 0;
+    }
+
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    public static long line(int from, int to) {
+        return LINE[from][to];
+    }
+
+    private static long[] initMagics(int[][] directions, long[] masks, long[] magics, int[] shifts, int[] offsets) {
+        int size = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            masks[sq] = slide(sq, 0, directions) & ~edges(sq);
+            shifts[sq] = 64 - Long.bitCount(masks[sq]);
+            offsets[sq] = size;
+            size += 1 << Long.bitCount(masks[sq]);
+        }
+
+        long[] table = new long[size];
+        for (int sq = 0; sq < 64; sq++) {
+            long subset = 0;
+            do {
+                int index = offsets[sq] + (int) ((subset * magics[sq]) >>> shifts[sq]);
+                long attacks = slide(sq, subset, directions);
+                if (table[index] != 0 && table[index] != attacks) {
+                    throw new IllegalStateException("Bad magic for square " + sq);
+                }
+                table[index] = attacks;
+                subset = (subset - masks[sq]) & masks[sq];
+            } while (subset != 0);
+        }
+        return table;
+    }
+
+    private static long edges(int sq) {
+        long rows = (0xffL | 0xffL << 56) & ~(0xffL << (sq & ~7));
+        long cols = (0x0101010101010101L | 0x8080808080808080L) & ~(0x0101010101010101L << (sq & 7));
+        return rows | cols;
+    }
+
+    private static long slide(int sq, long occupied, int[][] directions) {
+        long attacks = 0;
+        for (int[] direction : directions) {
+            int c = (sq & 7) + direction[0];
+            int r = (sq >>> 3) + direction[1];
+            while (c >= 0 && c < 8 && r >= 0 && r < 8) {
+                long bit = 1L << (r * 8 + c);
+                attacks |= bit;
+                if ((occupied & bit) != 0) break;
+                c += direction[0];
+                r += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+}
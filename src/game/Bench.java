@@ -0,0 +1,140 @@
+package game;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+public class Bench {
+
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long MEASURE_NANOS = 3_000_000_000L;
+    private static final int PERFT_DEPTH = 5;
+    // e4, the square a dirty-region repaint of 1. e4 would cover
+    private static final int SQUARE_X = 300;
+    private static final int SQUARE_Y = 300;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Results are written here so the JIT can't drop the benchmarked call
+    static volatile Object sink;
+
+    interface Benchmark {
+        Object run();
+    }
+
+    public static void measure(String name, Benchmark benchmark) {
+        repeat(benchmark, WARMUP_NANOS);
+        long threadId = Thread.currentThread().getId();
+        long bytes = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long ops = repeat(benchmark, MEASURE_NANOS);
+        long elapsed = System.nanoTime() - start;
+        bytes = THREADS.getThreadAllocatedBytes(threadId) - bytes;
+        System.out.println(String.format("%-28s %12.1f ns/op %12.1f B/op %12d ops",
+                name, (double) elapsed / ops, (double) bytes / ops, ops));
+    }
+
+    private static long repeat(Benchmark benchmark, long nanos) {
+        long ops = 0;
+        long end = System.nanoTime() + nanos;
+        do {
+            sink = benchmark.run();
+            ops++;
+        } while (System.nanoTime() < end);
+        return ops;
+    }
+
+    // Frame times as the display records them itself, to show how far the slowest frames are from the average
+    public static void measureFrames(String name, Display display, Graphics2D g) {
+        LatencyHistogram frames = new LatencyHistogram();
+        long end = System.nanoTime() + MEASURE_NANOS;
+        do {
+            display.paintComponent(g);
+            frames.record(display.getLastFrameNanos());
+        } while (System.nanoTime() < end);
+        System.out.println(String.format("%-28s %s", name, frames));
+    }
+
+    public static void measurePerft(String fen, int depth) {
+        Board board = new Board();
+        Fen.load(board, fen);
+        Perft perft = new Perft(board);
+        perft.count(depth - 1);
+        long threadId = Thread.currentThread().getId();
+        long bytes = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long nodes = perft.count(depth);
+        long elapsed = System.nanoTime() - start;
+        bytes = THREADS.getThreadAllocatedBytes(threadId) - bytes;
+        System.out.println(String.format("%-28s %12.0f nodes/s %10d B total %12d nodes",
+                "perft " + depth, nodes * 1e9 / elapsed, bytes, nodes));
+    }
+
+    private static void play(Game game, String... moves) {
+        for (String text : moves) {
+            for (int i = 0; i < game.legalMoves.size(); i++) {
+                int move = game.legalMoves.get(i);
+                if (Move.toString(move).equals(text)) {
+                    game.play(move);
+                    break;
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        measurePerft(Fen.START, PERFT_DEPTH);
+
+        Board board = new Board();
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+        measure("Fen.load", () -> {
+            Fen.load(board, fen);
+            return board;
+        });
+        measure("Fen.export", () -> Fen.export(board));
+
+        Game game = new Game();
+        play(game, "e2e4", "e7e5", "g1f3", "b8c6", "f1c4", "g8f6", "b1c3", "f8c5");
+        measure("Game.writeMoves", () -> {
+            game.writeMoves();
+            return game.legalMoves;
+        });
+        int lastMove = game.board.lastMove();
+        measure("Game.writeMoves incremental", () -> {
+            game.writeMoves(lastMove);
+            return game.legalMoves;
+        });
+        measure("Game.checkMateCheck", () -> game.checkMateCheck());
+        measure("Game.getString", () -> game.getString(game.score.size() - 1));
+
+        // A second visit to the position: the moves, status and notation all come out of the cache
+        game.setPositionCache(new PositionCache(1024));
+        game.takeBack();
+        game.play(lastMove);
+        measure("Game.writeMoves cached", () -> {
+            game.writeMoves(lastMove);
+            return game.legalMoves;
+        });
+        measure("Game.getString cached", () -> game.getString(game.score.size() - 1));
+
+        Display display = new Display();
+        BufferedImage image = new BufferedImage(1100, 600, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        measure("Display.paintComponent", () -> {
+            display.paintComponent(g);
+            return image;
+        });
+        measureFrames("Display frame time", display, g);
+        g.setClip(SQUARE_X, SQUARE_Y, 60, 60);
+        measure("Display.paintComponent square", () -> {
+            display.paintComponent(g);
+            return image;
+        });
+        measureFrames("Display frame time square", display, g);
+        g.dispose();
+    }
+
+}
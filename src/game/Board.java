@@ -0,0 +1,385 @@
+package game;
+
+import java.util.Arrays;
+
+public class Board {
+
+    // Piece codes: the low three bits are the PieceType ordinal, bit 3 is set for black
+    public static final int EMPTY = PieceType.EMPTY.ordinal();
+    public static final int BLACK = 8;
+    public static final int NO_SQUARE = 64;
+
+    public static final int WHITE_KING_SIDE = 1;
+    public static final int WHITE_QUEEN_SIDE = 2;
+    public static final int BLACK_KING_SIDE = 4;
+    public static final int BLACK_QUEEN_SIDE = 8;
+
+    private static final long LIGHT_SQUARES = 0x55aa55aa55aa55aaL;
+
+    private static final PieceType[] TYPES = PieceType.values();
+    private static final Cell[] CELLS = new Cell[64];
+    private static final int[] CASTLE_MASK = new int[64];
+    private static final long[][] PAWN_KEYS = new long[16][64];
+
+    static {
+        PAWN_KEYS[PieceType.PAWN.ordinal()] = Zobrist.PIECES[PieceType.PAWN.ordinal()];
+        PAWN_KEYS[PieceType.PAWN.ordinal() | BLACK] = Zobrist.PIECES[PieceType.PAWN.ordinal() | BLACK];
+        for (int sq = 0; sq < 64; sq++) {
+            CELLS[sq] = new Cell(Game.getCharForNumber(sq % 8 + 1), sq / 8 + 1);
+            CASTLE_MASK[sq] = 15;
+        }
+        CASTLE_MASK[0] &= ~WHITE_QUEEN_SIDE;
+        CASTLE_MASK[7] &= ~WHITE_KING_SIDE;
+        CASTLE_MASK[4] &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        CASTLE_MASK[56] &= ~BLACK_QUEEN_SIDE;
+        CASTLE_MASK[63] &= ~BLACK_KING_SIDE;
+        CASTLE_MASK[60] &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+    }
+
+    private final long[] colours = new long[2];
+    private final long[] types = new long[6];
+    private final int[] mailbox = new int[64];
+    boolean whiteToMove = true;
+    int castling;
+    int epSquare = NO_SQUARE;
+    int halfmoveClock;
+    int fullmoveNumber = 1;
+    private long key;
+    // Evaluation terms kept up to date by put and remove: white-relative material plus square scores
+    // for each phase, the game phase, and a key over the pawns alone
+    int midgame;
+    int endgame;
+    int phase;
+    private long pawnKey;
+
+    // Undo records: bits 0-15 move, 16-19 captured code, 20-23 castling, 24-30 ep square, 32+ halfmove clock,
+    // with the position key before the move kept alongside in keys
+    private long[] history = new long[256];
+    private long[] keys = new long[256];
+    private int historySize;
+
+    public Board() {
+        Arrays.fill(mailbox, EMPTY);
+    }
+
+    public Board(Board other) {
+        System.arraycopy(other.colours, 0, colours, 0, colours.length);
+        System.arraycopy(other.types, 0, types, 0, types.length);
+        System.arraycopy(other.mailbox, 0, mailbox, 0, mailbox.length);
+        whiteToMove = other.whiteToMove;
+        castling = other.castling;
+        epSquare = other.epSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        key = other.key;
+        midgame = other.midgame;
+        endgame = other.endgame;
+        phase = other.phase;
+        pawnKey = other.pawnKey;
+        history = other.history.clone();
+        keys = other.keys.clone();
+        historySize = other.historySize;
+    }
+
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flags = Move.flags(move);
+        int code = mailbox[from];
+        boolean white = white(code);
+
+        if (historySize == history.length) {
+            history = Arrays.copyOf(history, historySize * 2);
+            keys = Arrays.copyOf(keys, historySize * 2);
+        }
+        keys[historySize] = key;
+        key ^= Zobrist.CASTLING[castling] ^ epKey();
+        int captured = Move.isCapture(move) ? remove(captureSquare(move, white)) : EMPTY;
+        history[historySize++] = move | (captured << 16) | (castling << 20) | (epSquare << 24) |
+                ((long) halfmoveClock << 32);
+
+        move(from, to);
+        if (Move.isPromotion(move)) {
+            remove(to);
+            put(to, code(Move.promotion(move), white));
+        }
+        else if (flags == Move.CASTLE_KING || flags == Move.CASTLE_QUEEN) {
+            move(castleRookFrom(move), castleRookTo(move));
+        }
+
+        castling &= CASTLE_MASK[from] & CASTLE_MASK[to];
+        epSquare = flags == Move.DOUBLE_PUSH ? (from + to) / 2 : NO_SQUARE;
+        halfmoveClock = (code & 7) == PieceType.PAWN.ordinal() || captured != EMPTY ? 0 : halfmoveClock + 1;
+        if (!whiteToMove) fullmoveNumber++;
+        whiteToMove = !whiteToMove;
+        key ^= Zobrist.CASTLING[castling] ^ epKey() ^ Zobrist.SIDE;
+    }
+
+    public void unmakeMove() {
+        long undo = history[--historySize];
+        int move = (int) (undo & 0xffff);
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flags = Move.flags(move);
+        int captured = (int) (undo >>> 16) & 15;
+        boolean white = white(mailbox[to]);
+
+        whiteToMove = !whiteToMove;
+        if (!whiteToMove) fullmoveNumber--;
+        castling = (int) (undo >>> 20) & 15;
+        epSquare = (int) (undo >>> 24) & 127;
+        halfmoveClock = (int) (undo >>> 32);
+
+        if (Move.isPromotion(move)) {
+            remove(to);
+            put(to, code(PieceType.PAWN, white));
+        }
+        else if (flags == Move.CASTLE_KING || flags == Move.CASTLE_QUEEN) {
+            move(castleRookTo(move), castleRookFrom(move));
+        }
+        move(to, from);
+        if (captured != EMPTY) put(captureSquare(move, white), captured);
+        key = keys[historySize];
+    }
+
+    public long key() {
+        return key;
+    }
+
+    public long pawnKey() {
+        return pawnKey;
+    }
+
+    public void refreshKey() {
+        key = computeKey();
+    }
+
+    public long computeKey() {
+        long k = Zobrist.CASTLING[castling] ^ epKey();
+        if (!whiteToMove) k ^= Zobrist.SIDE;
+        for (long bb = occupied(); bb != 0; bb &= bb - 1) {
+            int sq = Long.numberOfTrailingZeros(bb);
+            k ^= Zobrist.PIECES[mailbox[sq]][sq];
+        }
+        return k;
+    }
+
+    // The en-passant file only counts when a pawn could actually take, so it doesn't split equal positions
+    private long epKey() {
+        if (epSquare == NO_SQUARE ||
+                (Attacks.pawn(epSquare, !whiteToMove) & pieces(PieceType.PAWN, whiteToMove)) == 0) return 0;
+        return Zobrist.EP_FILE[epSquare & 7];
+    }
+
+    // How many times the current position occurred before. Only positions since the last capture or pawn move
+    // can repeat, and only those with the same side to move, so the scan is bounded by the halfmove clock.
+    public int repetitions() {
+        int count = 0;
+        int oldest = Math.max(0, historySize - halfmoveClock);
+        for (int i = historySize - 2; i >= oldest; i -= 2) {
+            if (keys[i] == key) count++;
+        }
+        return count;
+    }
+
+    // Neither side can mate: bare kings, a single minor piece, or only bishops all on one colour
+    public boolean insufficientMaterial() {
+        if ((types[PieceType.PAWN.ordinal()] | types[PieceType.ROOK.ordinal()] | types[PieceType.QUEEN.ordinal()]) != 0) {
+            return false;
+        }
+        long bishops = types[PieceType.BISHOP.ordinal()];
+        long knights = types[PieceType.KNIGHT.ordinal()];
+        if (Long.bitCount(bishops | knights) <= 1) return true;
+        return knights == 0 && ((bishops & LIGHT_SQUARES) == 0 || (bishops & ~LIGHT_SQUARES) == 0);
+    }
+
+    public boolean isDraw() {
+        return halfmoveClock >= 100 || insufficientMaterial() || repetitions() > 0;
+    }
+
+    // The key of the position the given move of the history was made from
+    public long keyBefore(int ply) {
+        return keys[ply];
+    }
+
+    public int lastMove() {
+        return historySize == 0 ? Move.NONE : (int) (history[historySize - 1] & 0xffff);
+    }
+
+    public int plies() {
+        return historySize;
+    }
+
+    public void put(int sq, PieceType type, boolean white) {
+        put(sq, code(type, white));
+    }
+
+    public void put(int sq, int code) {
+        long bit = 1L << sq;
+        colours[(code & BLACK) >>> 3] |= bit;
+        types[code & 7] |= bit;
+        mailbox[sq] = code;
+        key ^= Zobrist.PIECES[code][sq];
+        pawnKey ^= PAWN_KEYS[code][sq];
+        midgame += Evaluator.MIDGAME[code][sq];
+        endgame += Evaluator.ENDGAME[code][sq];
+        phase += Evaluator.PHASE[code & 7];
+    }
+
+    public int remove(int sq) {
+        int code = mailbox[sq];
+        if (code != EMPTY) {
+            long bit = ~(1L << sq);
+            colours[(code & BLACK) >>> 3] &= bit;
+            types[code & 7] &= bit;
+            mailbox[sq] = EMPTY;
+            key ^= Zobrist.PIECES[code][sq];
+            pawnKey ^= PAWN_KEYS[code][sq];
+            midgame -= Evaluator.MIDGAME[code][sq];
+            endgame -= Evaluator.ENDGAME[code][sq];
+            phase -= Evaluator.PHASE[code & 7];
+        }
+        return code;
+    }
+
+    public void move(int from, int to) {
+        put(to, remove(from));
+    }
+
+    public void clear() {
+        Arrays.fill(colours, 0);
+        Arrays.fill(types, 0);
+        Arrays.fill(mailbox, EMPTY);
+        whiteToMove = true;
+        castling = 0;
+        epSquare = NO_SQUARE;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        historySize = 0;
+        key = 0;
+        pawnKey = 0;
+        midgame = 0;
+        endgame = 0;
+        phase = 0;
+    }
+
+    public void setCastlingFromPosition() {
+        castling = possibleCastling();
+        refreshKey();
+    }
+
+    // The castling rights the kings and rooks still standing on their starting squares allow
+    int possibleCastling() {
+        int rights = 0;
+        if (codeAt(4) == code(PieceType.KING, true)) {
+            if (codeAt(7) == code(PieceType.ROOK, true)) rights |= WHITE_KING_SIDE;
+            if (codeAt(0) == code(PieceType.ROOK, true)) rights |= WHITE_QUEEN_SIDE;
+        }
+        if (codeAt(60) == code(PieceType.KING, false)) {
+            if (codeAt(63) == code(PieceType.ROOK, false)) rights |= BLACK_KING_SIDE;
+            if (codeAt(56) == code(PieceType.ROOK, false)) rights |= BLACK_QUEEN_SIDE;
+        }
+        return rights;
+    }
+
+    public int codeAt(int sq) {
+        return mailbox[sq];
+    }
+
+    public PieceType typeAt(int sq) {
+        return type(mailbox[sq]);
+    }
+
+    public boolean isEmpty(int sq) {
+        return ((occupied() >>> sq) & 1) == 0;
+    }
+
+    public boolean isWhite(int sq) {
+        return ((colours[0] >>> sq) & 1) != 0;
+    }
+
+    public long occupied() {
+        return colours[0] | colours[1];
+    }
+
+    public long colour(boolean white) {
+        return colours[white ? 0 : 1];
+    }
+
+    public long pieces(PieceType type) {
+        return types[type.ordinal()];
+    }
+
+    public long pieces(PieceType type, boolean white) {
+        return types[type.ordinal()] & colours[white ? 0 : 1];
+    }
+
+    public int kingSquare(boolean white) {
+        return Long.numberOfTrailingZeros(pieces(PieceType.KING, white));
+    }
+
+    public long attackersTo(int sq, boolean byWhite, long occupied) {
+        long queens = pieces(PieceType.QUEEN);
+        return ((Attacks.pawn(sq, !byWhite) & pieces(PieceType.PAWN)) |
+                (Attacks.knight(sq) & pieces(PieceType.KNIGHT)) |
+                (Attacks.king(sq) & pieces(PieceType.KING)) |
+                (Attacks.bishop(sq, occupied) & (pieces(PieceType.BISHOP) | queens)) |
+                (Attacks.rook(sq, occupied) & (pieces(PieceType.ROOK) | queens))) & colour(byWhite);
+    }
+
+    public boolean isAttacked(int sq, boolean byWhite) {
+        return attackersTo(sq, byWhite, occupied()) != 0;
+    }
+
+    public boolean inCheck(boolean white) {
+        long king = pieces(PieceType.KING, white);
+        return king != 0 && isAttacked(Long.numberOfTrailingZeros(king), !white);
+    }
+
+    public static int captureSquare(int move, boolean white) {
+        int to = Move.to(move);
+        if (Move.flags(move) != Move.EN_PASSANT) return to;
+        return to + (white ? -8 : 8);
+    }
+
+    public static int castleRookFrom(int move) {
+        return Move.flags(move) == Move.CASTLE_KING ? Move.to(move) + 1 : Move.to(move) - 2;
+    }
+
+    public static int castleRookTo(int move) {
+        return Move.flags(move) == Move.CASTLE_KING ? Move.to(move) - 1 : Move.to(move) + 1;
+    }
+
+    public static int code(PieceType type, boolean white) {
+        return type.ordinal() | (white ? 0 : BLACK);
+    }
+
+    public static PieceType type(int code) {
+        return TYPES[code & 7];
+    }
+
+    public static boolean white(int code) {
+        return (code & BLACK) == 0;
+    }
+
+    public static boolean onBoard(int col, int row) {
+        return col >= 1 && col <= 8 && row >= 1 && row <= 8;
+    }
+
+    public static boolean onBoard(Cell cell) {
+        return onBoard(Game.charLetterToInt(cell.col), cell.row);
+    }
+
+    public static int square(int col, int row) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    public static int square(Cell cell) {
+        return square(Game.charLetterToInt(cell.col), cell.row);
+    }
+
+    public static Cell cell(int sq) {
+        return CELLS[sq];
+    }
+
+}
@@ -0,0 +1,192 @@
+package game;
+
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.util.concurrent.ExecutionException;
+import javax.swing.SwingWorker;
+
+enum GameState {NONE, HIGHLIGHTED, MOVED, THINKING, END}
+
+public class Controller implements MouseListener {
+
+    private final int SQUARE = 60;
+    private final long COMPUTER_MILLIS = 1000;
+    private Display display;
+    private Game game;
+    GameState state = GameState.NONE;
+    Piece highlightedPiece;
+    private long highlightedSquares;
+    private boolean computerOpponent;
+
+    public Controller(Display display, Game game) {
+        this.display = display;
+        this.game = game;
+    }
+
+    public void setComputerOpponent(boolean computerOpponent) {
+        this.computerOpponent = computerOpponent;
+    }
+
+    private void pickPiece(MouseEvent e) {
+        int x = e.getX();
+        int y = e.getY();
+        if (x < SQUARE || x > SQUARE * 9 || y < SQUARE || y > SQUARE * 9) return;
+
+        Cell c = getCellClicked(x, y);
+        if (!Board.onBoard(c)) return;
+        int sq = Board.square(c);
+        Board board = game.getBoard();
+        if (!board.isEmpty(sq) && board.isWhite(sq) == game.isWhiteTurn()) {
+            highlight(sq);
+        }
+    }
+
+    private Cell getCellClicked(int x, int y) {
+        return new Cell(Game.getCharForNumber(x / SQUARE), 9 - (y / SQUARE));
+    }
+
+    private void movePiece(MouseEvent e) {
+        state = GameState.NONE;
+        long dirty = highlightedSquares;
+        highlightedSquares = 0;
+        int x = e.getX();
+        int y = e.getY();
+        Cell clickedCell = getCellClicked(x, y);
+        int move = Board.onBoard(clickedCell) ?
+                game.findMove(Board.square(highlightedPiece.cell), Board.square(clickedCell)) : Move.NONE;
+
+        if (move != Move.NONE && game.play(move)) {
+            moved();
+            dirty |= changedSquares(move);
+            display.repaintScore();
+            if (state != GameState.END && computerOpponent) computerMove();
+        }
+        else {
+            pickPiece(e);
+        }
+
+        display.repaintSquares(dirty);
+    }
+
+    // The squares a move touches on the current board, including the rook of a castle and an en-passant victim
+    private long changedSquares(int move) {
+        int to = Move.to(move);
+        long squares = (1L << Move.from(move)) | (1L << to);
+        int flags = Move.flags(move);
+        if (flags == Move.EN_PASSANT) {
+            squares |= 1L << Board.captureSquare(move, game.getBoard().isWhite(to));
+        }
+        else if (flags == Move.CASTLE_KING || flags == Move.CASTLE_QUEEN) {
+            squares |= (1L << Board.castleRookFrom(move)) | (1L << Board.castleRookTo(move));
+        }
+        return squares;
+    }
+
+    private void moved() {
+        state = GameState.MOVED;
+        System.out.println(game.getString(game.getScore().size() - 1));
+        if (game.getStatus() != GameStatus.ONGOING) endGame();
+        else if (game.isClaimableDraw()) System.out.println("Draw can be claimed");
+    }
+
+    // The computer plays black; the search runs off the event thread and the move is applied back on it
+    private void computerMove() {
+        if (game.isWhiteTurn()) return;
+        state = GameState.THINKING;
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() {
+                return game.findBestMove(COMPUTER_MILLIS);
+            }
+
+            @Override
+            protected void done() {
+                state = GameState.NONE;
+                try {
+                    int move = get();
+                    if (game.play(move)) {
+                        moved();
+                        display.repaintSquares(changedSquares(move));
+                        display.repaintScore();
+                    }
+                }
+                catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
+    }
+
+    private void endGame() {
+        state = GameState.END;
+        if (game.getStatus() == GameStatus.CHECKMATE) {
+            System.out.println((game.isWhiteTurn() ? "black" : "white") + " wins!");
+        }
+        else {
+            System.out.println("Draw");
+        }
+    }
+
+    private void highlight(int sq) {
+        Board board = game.getBoard();
+        highlightedPiece = new Piece(board.typeAt(sq), board.isWhite(sq), Board.cell(sq));
+        MoveList legalMoves = game.getLegalMoves();
+        for (int i = 0; i < legalMoves.size(); i++) {
+            int move = legalMoves.get(i);
+            Cell to = Board.cell(Move.to(move));
+            if (Move.from(move) == sq && !highlightedPiece.moves.contains(to)) highlightedPiece.moves.add(to);
+        }
+        long dirty = highlightedSquares;
+        highlightedSquares = 1L << sq;
+        for (Cell cell : highlightedPiece.moves) highlightedSquares |= 1L << Board.square(cell);
+        state = GameState.HIGHLIGHTED;
+        display.repaintSquares(dirty | highlightedSquares);
+    }
+
+    private void takeBack() {
+        long dirty = highlightedSquares;
+        int move = game.getBoard().lastMove();
+        if (move != Move.NONE) dirty |= changedSquares(move);
+        if (game.takeBack()) {
+            move = game.getBoard().lastMove();
+            if (computerOpponent && !game.isWhiteTurn() && move != Move.NONE) {
+                dirty |= changedSquares(move);
+                game.takeBack();
+            }
+            highlightedSquares = 0;
+            state = GameState.NONE;
+            display.repaintSquares(dirty);
+            display.repaintScore();
+        }
+    }
+
+    @Override
+    public void mouseClicked(MouseEvent e) {
+        if (state == GameState.THINKING) {
+            return;
+        }
+        else if (e.getButton() == MouseEvent.BUTTON3) {
+            takeBack();
+        }
+        else if (state != GameState.END) {
+            if (state == GameState.HIGHLIGHTED) {
+                movePiece(e);
+            } else {
+                pickPiece(e);
+            }
+        }
+    }
+
+    @Override
+    public void mousePressed(MouseEvent e) {}
+
+    @Override
+    public void mouseReleased(MouseEvent e) {}
+
+    @Override
+    public void mouseEntered(MouseEvent e) {}
+
+    @Override
+    public void mouseExited(MouseEvent e) {}
+
+}
@@ -5,41 +5,133 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
-import java.io.File;
+import java.awt.image.VolatileImage;
 import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Paths;
 
 public class Display extends JPanel {
 
     private final int SQUARE = 60;
-    private final String PIECE_DIRECTORY = "resources/pieces/letters";
-    private Game game = new Game(this);
+    private final String PIECE_DIRECTORY = "/pieces/letters";
+    private final String BOARD_DIRECTORY = "resources/boards";
+    private final String BOARD_NAME = "default";
+    private final int BOARD_LAYER = SQUARE * 10;
+    private final Rectangle SCORE_AREA = new Rectangle(BOARD_LAYER, 0, 500, BOARD_LAYER);
+    private final Color BACKGROUND = new Color(192, 192, 192);
+    private final Color BORDER = new Color(50, 50, 50);
+    private final Color LIGHT_SQUARE = new Color(209, 139, 71);
+    private final Color DARK_SQUARE = new Color(255, 206, 158);
+    private final Color PICKED = new Color(150, 255, 159, 200);
+    private final Color TARGET = new Color(133, 248, 250, 200);
+    private final Color FADED = new Color(255, 255, 255, 0);
+    private final Font LETTER_FONT = new Font("Serif", Font.PLAIN, 25);
+    private final Font SCORE_FONT = new Font("Serif", Font.PLAIN, 20);
+    // Takebacks and repaints keep asking about the same few positions
+    private final int POSITION_CACHE = 4096;
+    private Game game = new Game();
+    private Controller controller = new Controller(this, game);
+    private BufferedImage atlas;
+    private BufferedImage[] highlightTiles;
+    // The score sheet is drawn into an image a line at a time as moves are added or taken back
+    private BufferedImage scoreImage;
+    // The moves the image shows, and which game they were from
+    private final GameRecord drawnScore = new GameRecord();
+    private int scoreVersion;
+    // The board and its coordinates never change, so they live in their own layer; when the panel isn't
+    // on screen there is no device to back a VolatileImage and a plain image is used instead
+    private VolatileImage boardLayer;
+    private BufferedImage boardImage;
+    private long lastFrameNanos;
+
+    public Display() {
+        setBackground(BACKGROUND);
+        game.setPositionCache(new PositionCache(POSITION_CACHE));
+        loadPosition(BOARD_NAME);
+    }
+
+    // A board file by name from the boards directory, a path to one, or a FEN string
+    public void loadPosition(String position) {
+        if (!position.endsWith(".txt") && position.indexOf(' ') < 0 && position.indexOf('/') < 0) {
+            position = BOARD_DIRECTORY + "/" + position + ".txt";
+        }
+        try {
+            game.loadPosition(position);
+        }
+        catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+        }
+        repaint();
+    }
 
     protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
         super.paintComponent(g);
-        setBackground(new Color(192, 192, 192));
 
         Graphics2D g2 = (Graphics2D) g;
-        drawBoard(g2);
-        drawLetters(g2);
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        drawBoardLayer(g2);
         drawPieces(g2);
-        drawScore(g2);
-        if (game.state == GameState.HIGHLIGHTED) drawHighlights(g2);
+        if (g2.hitClip(SCORE_AREA.x, SCORE_AREA.y, SCORE_AREA.width, SCORE_AREA.height)) drawScore(g2);
+        if (controller.state == GameState.HIGHLIGHTED) drawHighlights(g2);
+        lastFrameNanos = System.nanoTime() - start;
+    }
+
+    public long getLastFrameNanos() {
+        return lastFrameNanos;
+    }
+
+    // Only the given squares are repainted; Swing clips the paint to their union
+    void repaintSquares(long squares) {
+        for (; squares != 0; squares &= squares - 1) {
+            int sq = Long.numberOfTrailingZeros(squares);
+            repaint((sq % 8 + 1) * SQUARE, (8 - sq / 8) * SQUARE, SQUARE, SQUARE);
+        }
+    }
+
+    void repaintScore() {
+        repaint(SCORE_AREA);
+    }
+
+    private void drawBoardLayer(Graphics2D g) {
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        if (config == null) {
+            if (boardImage == null) {
+                boardImage = new BufferedImage(BOARD_LAYER, BOARD_LAYER, BufferedImage.TYPE_INT_RGB);
+                renderBoardLayer(boardImage.createGraphics());
+            }
+            g.drawImage(boardImage, 0, 0, null);
+            return;
+        }
+
+        // The contents of a volatile image can be lost at any time, so it is checked and redrawn as needed
+        do {
+            int status = boardLayer == null ? VolatileImage.IMAGE_INCOMPATIBLE : boardLayer.validate(config);
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                boardLayer = config.createCompatibleVolatileImage(BOARD_LAYER, BOARD_LAYER);
+            }
+            if (status != VolatileImage.IMAGE_OK) renderBoardLayer(boardLayer.createGraphics());
+            g.drawImage(boardLayer, 0, 0, null);
+        } while (boardLayer.contentsLost());
+    }
+
+    private void renderBoardLayer(Graphics2D g) {
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, BOARD_LAYER, BOARD_LAYER);
+        drawBoard(g);
+        drawLetters(g);
+        g.dispose();
     }
 
     private void drawBoard(Graphics2D g) {
         boolean dark = false;
 
-        g.setColor(new Color(50, 50, 50));
+        g.setColor(BORDER);
         g.fillRect(SQUARE / 2, SQUARE / 2, SQUARE * 9, SQUARE * 9);
 
         for (int r = 0; r < 8; r++) {
             for (int c = 0; c < 8; c++) {
-                if (dark) {
-                    g.setColor(new Color(255, 206, 158));
-                }
-                else {
-                    g.setColor(new Color(209, 139, 71));
-                }
+                g.setColor(dark ? DARK_SQUARE : LIGHT_SQUARE);
                 if (c != 7) dark = !dark;
 
                 g.fillRect(SQUARE * (r + 1), SQUARE * (c + 1), SQUARE, SQUARE);
@@ -50,7 +142,7 @@ public class Display extends JPanel {
     private void drawLetters(Graphics2D g) {
         g.setColor(Color.WHITE);
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g.setFont(new Font("Serif", Font.PLAIN, 25));
+        g.setFont(LETTER_FONT);
         FontMetrics fm = g.getFontMetrics();
         for (int i = 0; i < 8; i++) {
             String text = Game.getStringCharForNumber(8 - i);
@@ -62,34 +154,73 @@ public class Display extends JPanel {
     }
 
     private void drawPieces(Graphics2D g) {
-        for (int i = 0; i < game.pieces.size(); i++) {
-            Piece tempPiece = game.pieces.get(i);
-            String letter = tempPiece.white ? "W" : "B";
-            letter += Game.pieceTypeToLetter(tempPiece.type);
-            BufferedImage img;
+        if (atlas == null) atlas = loadAtlas();
+        for (long bb = game.board.occupied(); bb != 0; bb &= bb - 1) {
+            int sq = Long.numberOfTrailingZeros(bb);
+            int code = game.board.codeAt(sq);
+            int sprite = (Board.white(code) ? 0 : 6) + (code & 7);
+            int x = (sq % 8 + 1) * SQUARE;
+            int y = (8 - sq / 8) * SQUARE;
+            if (!g.hitClip(x, y, SQUARE, SQUARE)) continue;
+            g.drawImage(atlas, x, y, x + SQUARE, y + SQUARE,
+                    sprite * SQUARE, 0, (sprite + 1) * SQUARE, SQUARE, null);
+        }
+    }
+
+    // All twelve sprites are decoded once into a single image in the screen's native format
+    private BufferedImage loadAtlas() {
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        BufferedImage image = config != null ?
+                config.createCompatibleImage(SQUARE * 12, SQUARE, Transparency.TRANSLUCENT) :
+                new BufferedImage(SQUARE * 12, SQUARE, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        for (int sprite = 0; sprite < 12; sprite++) {
+            String letter = (sprite < 6 ? "W" : "B") + Game.pieceTypeToLetter(Board.type(sprite % 6));
+            URL url = Display.class.getResource(PIECE_DIRECTORY + "/" + letter + ".png");
+            if (url == null) {
+                System.err.println("Missing piece image " + letter);
+                continue;
+            }
             try {
-                img = ImageIO.read(new File(PIECE_DIRECTORY + "/" + letter + ".png"));
-                g.drawImage(img,
-                        Game.charLetterToInt(tempPiece.cell.col) * SQUARE,
-                        (9 - tempPiece.cell.row) * SQUARE,
-                        null);
+                g.drawImage(ImageIO.read(url), sprite * SQUARE, 0, null);
             } catch (IOException e) {
                 e.printStackTrace();
             }
-
         }
+        g.dispose();
+        return image;
+    }
+
+    // Cached images belong to the screen they were made for, so they are rebuilt when the panel moves
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        atlas = null;
+        highlightTiles = null;
+        boardLayer = null;
+        scoreImage = null;
     }
 
     private void drawHighlights(Graphics2D g) {
-        Piece clickedPiece = game.highlightedPiece;
-        int x = clickedPiece.cell.getX();
-        int y = clickedPiece.cell.getY();
-        drawSingleGradient(g, true, x, y);
-        for (Cell cell : game.highlightedPiece.moves) {
-            drawSingleGradient(g, false, cell.getX(), cell.getY());
+        if (highlightTiles == null) highlightTiles = new BufferedImage[] {loadHighlight(true), loadHighlight(false)};
+        Piece clickedPiece = controller.highlightedPiece;
+        g.drawImage(highlightTiles[0], clickedPiece.cell.getX(), clickedPiece.cell.getY(), null);
+        for (Cell cell : clickedPiece.moves) {
+            g.drawImage(highlightTiles[1], cell.getX(), cell.getY(), null);
         }
     }
 
+    private BufferedImage loadHighlight(boolean green) {
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        BufferedImage image = config != null ?
+                config.createCompatibleImage(SQUARE, SQUARE, Transparency.TRANSLUCENT) :
+                new BufferedImage(SQUARE, SQUARE, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        drawSingleGradient(g, green, 0, 0);
+        g.dispose();
+        return image;
+    }
+
     private void drawSingleGradient(Graphics2D g, boolean green, int x, int y) {
         Point2D top = new Point2D.Float(30 + x, y);
         Point2D left = new Point2D.Float(x, 30 + y);
@@ -104,42 +235,78 @@ public class Display extends JPanel {
     }
 
     private void paintGradientLayer(Graphics2D g, boolean green, int x, int y, Point2D start, Point2D end) {
-        Color color = green ? new Color(150, 255, 159, 200) : new Color(133, 248, 250, 200);
-        GradientPaint gradientPaint = new GradientPaint(
-                start, color, end, new Color(255, 255, 255, 0));
+        GradientPaint gradientPaint = new GradientPaint(start, green ? PICKED : TARGET, end, FADED);
         g.setPaint(gradientPaint);
         g.fillRect(x, y, 60, 60);
     }
 
     private void drawScore(Graphics2D g) {
-        boolean white = true;
-        int row = 0;
-        int col = -1;
-        String line = "";
+        GameRecord score = game.score;
+        if (scoreImage == null) {
+            GraphicsConfiguration config = getGraphicsConfiguration();
+            scoreImage = config != null ?
+                    config.createCompatibleImage(SCORE_AREA.width, SCORE_AREA.height, Transparency.OPAQUE) :
+                    new BufferedImage(SCORE_AREA.width, SCORE_AREA.height, BufferedImage.TYPE_INT_RGB);
+            drawnScore.clear();
+            scoreVersion = score.getVersion();
+            Graphics2D sg = scoreImage.createGraphics();
+            sg.setColor(BACKGROUND);
+            sg.fillRect(0, 0, SCORE_AREA.width, SCORE_AREA.height);
+            sg.dispose();
+        }
+        // Only the lines past the moves still shown are redrawn; a different game, even one of the same
+        // length, shares none of them
+        int same = score.getVersion() == scoreVersion ? sharedMoves(score) : 0;
+        if (same != drawnScore.size() || same != score.size()) redrawScore(score, same & ~1);
+        g.drawImage(scoreImage, SCORE_AREA.x, SCORE_AREA.y, null);
+    }
 
-        g.setFont(new Font("Serif", Font.PLAIN, 20));
-        g.setColor(Color.BLACK);
+    private int sharedMoves(GameRecord score) {
+        int size = Math.min(drawnScore.size(), score.size());
+        for (int i = 0; i < size; i++) {
+            if (drawnScore.get(i) != score.get(i)) return i;
+        }
+        return size;
+    }
 
-        for (NotationObject nextMove : game.score) {
-            if (white) {
-                if (row % 21 == 0) {
-                    col++;
-                    row = 0;
-                }
-                row++;
-                line = (row + (21 * col)) + ". " + nextMove.getString();
-            }
-            else {
-                line += " " + nextMove.getString();
-            }
-            g.drawString(line, 600 + (180 * col), (25 * row) + 30);
-            white = !white;
+    // Each getString takes the board back to its ply, so a sheet drawn from the top gets the whole score
+    // in one replay instead
+    private void redrawScore(GameRecord score, int first) {
+        String[] notation = first == 0 && !score.isEmpty() ? game.getNotation(false) : null;
+        Graphics2D g = scoreImage.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setFont(SCORE_FONT);
+        for (int i = first; i < Math.max(drawnScore.size(), score.size()); i += 2) {
+            drawScoreLine(g, score, i / 2, notation);
         }
+        g.dispose();
+        while (drawnScore.size() > first) drawnScore.removeLast();
+        for (int i = first; i < score.size(); i++) {
+            drawnScore.add(score.get(i));
+        }
+        scoreVersion = score.getVersion();
+    }
+
+    private void drawScoreLine(Graphics2D g, GameRecord score, int line, String[] notation) {
+        int x = 180 * (line / 21);
+        int y = (25 * (line % 21 + 1)) + 30;
+        g.setColor(BACKGROUND);
+        g.fillRect(x, y - 20, 180, 25);
+        if (line * 2 >= score.size()) return;
+
+        String text = (line + 1) + ". " + scoreText(line * 2, notation);
+        if (line * 2 + 1 < score.size()) text += " " + scoreText(line * 2 + 1, notation);
+        g.setColor(Color.BLACK);
+        g.drawString(text, x, y);
+    }
+
+    private String scoreText(int ply, String[] notation) {
+        return notation != null ? notation[ply] : game.getString(ply);
     }
 
     private void createFrame() {
         JFrame f = new JFrame();
-        this.addMouseListener(game);
+        this.addMouseListener(controller);
         f.add(this);
         f.getContentPane().setPreferredSize(new Dimension(1100, 600));
         f.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
@@ -150,8 +317,29 @@ public class Display extends JPanel {
         f.setVisible(true);
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         Display d = new Display();
+        String book = null;
+        String bookKeys = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--computer")) {
+                d.controller.setComputerOpponent(true);
+            }
+            else if (args[i].equals("--position") && i + 1 < args.length) {
+                d.loadPosition(args[++i]);
+            }
+            else if (args[i].equals("--book") && i + 1 < args.length) {
+                book = args[++i];
+            }
+            else if (args[i].equals("--book-keys") && i + 1 < args.length) {
+                bookKeys = args[++i];
+            }
+        }
+        if (book != null) {
+            d.game.setOpeningBook(bookKeys != null ?
+                    new OpeningBook(Paths.get(book), OpeningBook.loadKeys(Paths.get(bookKeys))) :
+                    new OpeningBook(Paths.get(book)));
+        }
         d.createFrame();
     }
 
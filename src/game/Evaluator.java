@@ -0,0 +1,186 @@
+package game;
+
+public class Evaluator {
+
+    // Indexed by PieceType ordinal: KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN
+    static final int[] VALUES = {0, 900, 330, 320, 500, 100};
+    private static final int[] MIDGAME_VALUES = {0, 1025, 365, 337, 477, 82};
+    private static final int[] ENDGAME_VALUES = {0, 936, 297, 281, 512, 94};
+
+    // Game phase runs from 24 with all minor and major pieces on the board down to 0 with none
+    static final int MAX_PHASE = 24;
+    static final int[] PHASE = {0, 4, 1, 1, 2, 0};
+
+    // Piece-square tables from white's side, a8 first; black reads them mirrored
+    private static final int[] PAWN_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0};
+    private static final int[] PAWN_ENDGAME_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            80, 80, 80, 80, 80, 80, 80, 80,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            30, 30, 30, 30, 30, 30, 30, 30,
+            15, 15, 15, 15, 15, 15, 15, 15,
+            5, 5, 5, 5, 5, 5, 5, 5,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0};
+    private static final int[] KNIGHT_TABLE = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50};
+    private static final int[] BISHOP_TABLE = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20};
+    private static final int[] ROOK_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0};
+    private static final int[] QUEEN_TABLE = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20};
+    private static final int[] KING_TABLE = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20};
+    private static final int[] KING_ENDGAME_TABLE = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50};
+
+    // Material plus square bonus by piece code and square, positive for white; Board sums these as pieces move
+    static final int[][] MIDGAME = new int[16][64];
+    static final int[][] ENDGAME = new int[16][64];
+
+    // Pawn structure terms, by how far the pawn has advanced
+    private static final int DOUBLED_MIDGAME = -10;
+    private static final int DOUBLED_ENDGAME = -20;
+    private static final int ISOLATED_MIDGAME = -10;
+    private static final int ISOLATED_ENDGAME = -15;
+    private static final int[] PASSED_MIDGAME = {0, 5, 10, 15, 25, 40, 60, 0};
+    private static final int[] PASSED_ENDGAME = {0, 10, 20, 35, 55, 80, 110, 0};
+
+    private static final long FILE_A = 0x0101010101010101L;
+    private static final long[] ADJACENT_FILES = new long[8];
+    private static final long[][] PASSED_SPAN = new long[2][64];
+
+    private static final int PAWN_CACHE_BITS = 14;
+
+    static {
+        int[][] midgameTables = {KING_TABLE, QUEEN_TABLE, BISHOP_TABLE, KNIGHT_TABLE, ROOK_TABLE, PAWN_TABLE};
+        int[][] endgameTables = {KING_ENDGAME_TABLE, QUEEN_TABLE, BISHOP_TABLE, KNIGHT_TABLE, ROOK_TABLE,
+                PAWN_ENDGAME_TABLE};
+        for (int type = 0; type < 6; type++) {
+            for (int sq = 0; sq < 64; sq++) {
+                MIDGAME[type][sq] = MIDGAME_VALUES[type] + midgameTables[type][sq ^ 56];
+                ENDGAME[type][sq] = ENDGAME_VALUES[type] + endgameTables[type][sq ^ 56];
+                MIDGAME[type | Board.BLACK][sq] = -(MIDGAME_VALUES[type] + midgameTables[type][sq]);
+                ENDGAME[type | Board.BLACK][sq] = -(ENDGAME_VALUES[type] + endgameTables[type][sq]);
+            }
+        }
+
+        for (int file = 0; file < 8; file++) {
+            if (file > 0) ADJACENT_FILES[file] |= FILE_A << (file - 1);
+            if (file < 7) ADJACENT_FILES[file] |= FILE_A << (file + 1);
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            long files = ADJACENT_FILES[sq & 7] | (FILE_A << (sq & 7));
+            int row = sq >>> 3;
+            PASSED_SPAN[0][sq] = row == 7 ? 0 : files & (~0L << ((row + 1) * 8));
+            PASSED_SPAN[1][sq] = files & ((1L << (row * 8)) - 1);
+        }
+    }
+
+    // Pawn structure changes far less often than the rest of the position, so it is cached by pawn key;
+    // each entry packs the midgame score in the high half and the endgame score in the low half
+    private final long[] pawnKeys = new long[1 << PAWN_CACHE_BITS];
+    private final int[] pawnScores = new int[1 << PAWN_CACHE_BITS];
+
+    // Tapered score from the side to move's view
+    public int evaluate(Board board) {
+        int pawns = pawnStructure(board);
+        int midgame = board.midgame + (pawns >> 16);
+        int endgame = board.endgame + (short) pawns;
+        int phase = Math.min(board.phase, MAX_PHASE);
+        int score = (midgame * phase + endgame * (MAX_PHASE - phase)) / MAX_PHASE;
+        return board.whiteToMove ? score : -score;
+    }
+
+    private int pawnStructure(Board board) {
+        long key = board.pawnKey();
+        int index = (int) key & (pawnKeys.length - 1);
+        if (pawnKeys[index] == key) return pawnScores[index];
+
+        int midgame = 0;
+        int endgame = 0;
+        long white = board.pieces(PieceType.PAWN, true);
+        long black = board.pieces(PieceType.PAWN, false);
+        for (int side = 0; side < 2; side++) {
+            long ours = side == 0 ? white : black;
+            long theirs = side == 0 ? black : white;
+            int sign = side == 0 ? 1 : -1;
+            for (long bb = ours; bb != 0; bb &= bb - 1) {
+                int sq = Long.numberOfTrailingZeros(bb);
+                int file = sq & 7;
+                int advance = side == 0 ? sq >>> 3 : 7 - (sq >>> 3);
+                if ((ours & ADJACENT_FILES[file]) == 0) {
+                    midgame += sign * ISOLATED_MIDGAME;
+                    endgame += sign * ISOLATED_ENDGAME;
+                }
+                // A pawn with a friend ahead of it on its file is doubled, so each extra pawn costs once;
+                // only the frontmost one can be passed
+                if ((ours & PASSED_SPAN[side][sq] & (FILE_A << file)) != 0) {
+                    midgame += sign * DOUBLED_MIDGAME;
+                    endgame += sign * DOUBLED_ENDGAME;
+                }
+                else if ((theirs & PASSED_SPAN[side][sq]) == 0) {
+                    midgame += sign * PASSED_MIDGAME[advance];
+                    endgame += sign * PASSED_ENDGAME[advance];
+                }
+            }
+        }
+
+        int packed = (midgame << 16) | (endgame & 0xffff);
+        pawnKeys[index] = key;
+        pawnScores[index] = packed;
+        return packed;
+    }
+
+}
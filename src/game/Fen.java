@@ -0,0 +1,173 @@
+package game;
+
+import java.util.Arrays;
+
+public class Fen {
+
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    // Piece codes by FEN letter, and FEN letters by piece code
+    private static final int[] CODES = new int[128];
+    private static final String LETTERS = "KQBNRP..kqbnrp";
+
+    static {
+        Arrays.fill(CODES, -1);
+        for (int code = 0; code < LETTERS.length(); code++) {
+            if (LETTERS.charAt(code) != '.') CODES[LETTERS.charAt(code)] = code;
+        }
+    }
+
+    private Fen() {}
+
+    public static void load(Board board, CharSequence fen) {
+        load(board, fen, 0, fen.length());
+    }
+
+    // Reads the characters in place without splitting, so a position can be loaded straight out of a larger
+    // buffer; the clocks are optional and anything after them (EPD operations, for one) is ignored
+    public static void load(Board board, CharSequence fen, int start, int end) {
+        board.clear();
+
+        int i = skipSpaces(fen, start, end);
+        int row = 7;
+        int col = 0;
+        for (; i < end && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (col != 8 || row == 0) throw bad(fen, start, end);
+                row--;
+                col = 0;
+            }
+            else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            }
+            else {
+                int code = c < 128 ? CODES[c] : -1;
+                if (code < 0 || col > 7) throw bad(fen, start, end);
+                board.put(row * 8 + col, code);
+                col++;
+            }
+            if (col > 8) throw bad(fen, start, end);
+        }
+        if (row != 0 || col != 8) throw bad(fen, start, end);
+
+        i = skipSpaces(fen, i, end);
+        if (i >= end || (fen.charAt(i) != 'w' && fen.charAt(i) != 'b')) throw bad(fen, start, end);
+        board.whiteToMove = fen.charAt(i++) == 'w';
+
+        i = skipSpaces(fen, i, end);
+        if (i >= end) throw bad(fen, start, end);
+        if (fen.charAt(i) == '-') {
+            i++;
+        }
+        else {
+            for (; i < end && fen.charAt(i) != ' '; i++) {
+                switch (fen.charAt(i)) {
+                    case 'K':
+                        board.castling |= Board.WHITE_KING_SIDE;
+                        break;
+                    case 'Q':
+                        board.castling |= Board.WHITE_QUEEN_SIDE;
+                        break;
+                    case 'k':
+                        board.castling |= Board.BLACK_KING_SIDE;
+                        break;
+                    case 'q':
+                        board.castling |= Board.BLACK_QUEEN_SIDE;
+                        break;
+                    default:
+                        throw bad(fen, start, end);
+                }
+            }
+            // Rights the pieces can't back up would have castling move a rook that isn't there
+            board.castling &= board.possibleCastling();
+        }
+
+        i = skipSpaces(fen, i, end);
+        if (i >= end) throw bad(fen, start, end);
+        if (fen.charAt(i) == '-') {
+            i++;
+        }
+        else {
+            if (i + 1 >= end) throw bad(fen, start, end);
+            int file = fen.charAt(i) - 'a';
+            int rank = fen.charAt(i + 1) - '1';
+            if (file < 0 || file > 7 || rank != (board.whiteToMove ? 5 : 2)) throw bad(fen, start, end);
+            if (pushedPawn(board, rank * 8 + file)) board.epSquare = rank * 8 + file;
+            i += 2;
+        }
+
+        i = skipSpaces(fen, i, end);
+        if (i < end && isDigit(fen.charAt(i))) {
+            int clock = 0;
+            for (; i < end && isDigit(fen.charAt(i)); i++) clock = clock * 10 + fen.charAt(i) - '0';
+            board.halfmoveClock = clock;
+
+            i = skipSpaces(fen, i, end);
+            if (i < end && isDigit(fen.charAt(i))) {
+                int number = 0;
+                for (; i < end && isDigit(fen.charAt(i)); i++) number = number * 10 + fen.charAt(i) - '0';
+                board.fullmoveNumber = Math.max(1, number);
+            }
+        }
+        board.refreshKey();
+    }
+
+    public static String export(Board board) {
+        StringBuilder sb = new StringBuilder(90);
+        for (int row = 7; row >= 0; row--) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                int code = board.codeAt(row * 8 + col);
+                if (code == Board.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) sb.append(empty);
+                empty = 0;
+                sb.append(LETTERS.charAt(code));
+            }
+            if (empty > 0) sb.append(empty);
+            if (row > 0) sb.append('/');
+        }
+
+        sb.append(board.whiteToMove ? " w " : " b ");
+        if (board.castling == 0) sb.append('-');
+        if ((board.castling & Board.WHITE_KING_SIDE) != 0) sb.append('K');
+        if ((board.castling & Board.WHITE_QUEEN_SIDE) != 0) sb.append('Q');
+        if ((board.castling & Board.BLACK_KING_SIDE) != 0) sb.append('k');
+        if ((board.castling & Board.BLACK_QUEEN_SIDE) != 0) sb.append('q');
+
+        sb.append(' ');
+        if (board.epSquare == Board.NO_SQUARE) {
+            sb.append('-');
+        }
+        else {
+            sb.append(Game.getCharForNumber(board.epSquare % 8 + 1)).append(board.epSquare / 8 + 1);
+        }
+        sb.append(' ').append(board.halfmoveClock).append(' ').append(board.fullmoveNumber);
+        return sb.toString();
+    }
+
+    // Whether the pawn just moved could have come two squares through the given one; otherwise taking it
+    // en passant would capture on an empty square
+    private static boolean pushedPawn(Board board, int epSquare) {
+        int forward = board.whiteToMove ? -8 : 8;
+        return board.codeAt(epSquare + forward) == Board.code(PieceType.PAWN, !board.whiteToMove) &&
+                board.codeAt(epSquare) == Board.EMPTY && board.codeAt(epSquare - forward) == Board.EMPTY;
+    }
+
+    private static int skipSpaces(CharSequence fen, int i, int end) {
+        while (i < end && fen.charAt(i) == ' ') i++;
+        return i;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static IllegalArgumentException bad(CharSequence fen, int start, int end) {
+        return new IllegalArgumentException("Bad FEN: " + fen.subSequence(start, end));
+    }
+
+}
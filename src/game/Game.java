@@ -1,421 +1,328 @@
 package game;
 
-import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
-import java.util.ArrayList;
-
-enum GameState {NONE, HIGHLIGHTED, MOVED, END}
-
-public class Game implements MouseListener {
-
-    private final int SQUARE = 60;
-    private final int[][] UNIT_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
-    private final String BOARD_NAME = "default";
-    private boolean whiteTurn = true;
-    private Display display;
-    ArrayList<Piece> pieces = new ArrayList<>();
-    ArrayList<NotationObject> score = new ArrayList<>();
-    GameState state = GameState.NONE;
-    Piece highlightedPiece;
-    NotationObject moveNotation;
-
-    public Game(Display display) {
-        this.display = display;
-        makePieces();
-        writeMoves();
+import java.io.IOException;
+
+enum GameStatus {ONGOING, CHECKMATE, STALEMATE, DRAW}
+
+public class Game {
+
+    private static final int HASH_MEGABYTES = 16;
+
+    Board board = new Board();
+    MoveList legalMoves = new MoveList();
+    private final MoveTracker tracker = new MoveTracker();
+    // Optional and possibly shared with other games; entry is the current position's, once known
+    private PositionCache cache;
+    private PositionCache.Entry entry;
+    private boolean trackerStale;
+    GameRecord score = new GameRecord();
+    private GameStatus status = GameStatus.ONGOING;
+    private String startFen;
+    private TranspositionTable table;
+    private ParallelSearch search;
+    private OpeningBook book;
+    private int searchThreads = 1;
+
+    public Game() {
+        this(Fen.START);
     }
 
-    private void makePieces() {
-        try {
-            BufferedReader reader = new BufferedReader(
-                    new FileReader(new File("resources/boards/" + BOARD_NAME + ".txt")));
-            String line;
-            int row = 0;
-            while ((line = reader.readLine()) != null) {
-                row++;
-                processRow(line, row);
-            }
-            reader.close();
-        }
-        catch (Exception e) {
-            e.printStackTrace();
-        }
+    public Game(String fen) {
+        loadFen(fen);
     }
 
-    private void processRow(String line, int row) {
-        boolean white;
-        PieceType pieceType;
-        int col = 0;
-        while (line.length() > 0) {
-            col++;
-            if (!line.substring(0, 1).equals("0")) {
-                white = line.substring(0, 1).equals("W");
-                pieceType = letterToPieceType(line.substring(1, 2));
-                pieces.add(new Piece(pieceType, white, new Cell(getCharForNumber(col), 9 - row)));
+    public void loadFen(String fen) {
+        Fen.load(board, fen);
+        reset();
+    }
 
-            }
-            line = line.substring(2);
-        }
+    public void loadBoardFile(String path) throws IOException {
+        loadBoardFile(board, path);
+        reset();
     }
 
-    private void pickPiece(MouseEvent e) {
-        int x = e.getX();
-        int y = e.getY();
-        if (x < SQUARE || x > SQUARE * 9 || y < SQUARE || y > SQUARE * 9) return;
+    public void loadPosition(String position) throws IOException {
+        loadPosition(board, position);
+        reset();
+    }
 
-        Cell c = getCellClicked(x, y);
-        Piece clicked = getClickedPiece(c);
-        if (clicked != null) {
-            if (whiteTurn == clicked.white) {
-                highlight(clicked);
-            }
+    // Either a board file in the two-characters-per-square format or a FEN string
+    static void loadPosition(Board board, String position) throws IOException {
+        if (position.endsWith(".txt")) {
+            loadBoardFile(board, position);
+        }
+        else {
+            Fen.load(board, position);
         }
     }
 
-    private Cell getCellClicked(int x, int y) {
-        return new Cell(getCharForNumber(x / SQUARE), 9 - (y / SQUARE));
+    static void loadBoardFile(Board board, String path) throws IOException {
+        board.clear();
+        BufferedReader reader = new BufferedReader(new FileReader(new File(path)));
+        String line;
+        int row = 0;
+        while ((line = reader.readLine()) != null) {
+            row++;
+            processRow(board, line, row);
+        }
+        reader.close();
+        board.setCastlingFromPosition();
     }
 
-    private Piece getClickedPiece(Cell c) {
-        for (Piece piece : pieces) {
-            if (c.compare(piece.cell)) {
-                return piece;
-            }
-        }
-        return null;
-    }
-
-    private void movePiece(MouseEvent e) {
-        state = GameState.NONE;
-        int x = e.getX();
-        int y = e.getY();
-        moveNotation = new NotationObject(pieces, highlightedPiece);
-        Cell clickedCell = getCellClicked(x, y);
-
-        for (Cell nextMove : highlightedPiece.moves) {
-            if (clickedCell.compare(nextMove)) {
-                Piece p = getOverlapPiece(clickedCell);
-                if (p.type != PieceType.EMPTY) {
-                    pieces.remove(p);
-                    moveNotation.extraNotationList.add(SpecialNotation.CAPTURE);
-                }
-                moveNotation.moveTo = nextMove;
-                state = GameState.MOVED;
+    private static void processRow(Board board, CharSequence line, int row) {
+        if (row > 8) return;
+        for (int i = 0, col = 1; i + 1 < line.length() && col <= 8; i += 2, col++) {
+            char colour = line.charAt(i);
+            if (colour != '0') {
+                board.put(Board.square(col, 9 - row), letterToPieceType(line.charAt(i + 1)), colour == 'W');
             }
         }
+    }
 
-        if (state == GameState.MOVED) {
-            if (enPassantCheck(highlightedPiece.cell, clickedCell)) {
-                Piece p = getOverlapPiece(new Cell(
-                        clickedCell.col,
-                        clickedCell.row + (highlightedPiece.white ? -1 : 1)));
-                pieces.remove(p);
-                moveNotation.extraNotationList.add(SpecialNotation.EN_PASSANT);
-                moveNotation.extraNotationList.add(SpecialNotation.CAPTURE);
-            }
-            highlightedPiece.cell = clickedCell;
-            whiteTurn = !whiteTurn;
-            if (checkMateCheck().type != PieceType.NONE) {
-                state = GameState.END;
-                moveNotation.extraNotationList.add(SpecialNotation.CHECKMATE);
-            }
-            else if (drawCheck()) {
-                moveNotation.extraNotationList.add(SpecialNotation.DRAW);
-            }
-            score.add(moveNotation);
-            System.out.println(moveNotation.getString());
-            writeMoves();
-        }
-        else {
-            pickPiece(e);
-        }
+    private void reset() {
+        startFen = Fen.export(board);
+        score.clear();
+        writeMoves();
+        status = positionStatus();
+    }
 
-        if (state == GameState.END) endGame();
+    public Board getBoard() {
+        return board;
+    }
 
-        display.repaint();
+    public boolean isWhiteTurn() {
+        return board.whiteToMove;
     }
 
-    private boolean enPassantCheck(Cell originalPos, Cell eatPos) {
-        if (score.size() == 0) return false;
-        NotationObject previousMove = score.get(score.size() - 1);
-        if (previousMove.type == PieceType.PAWN &&
-                previousMove.oldCell.row == (previousMove.white ? 2 : 7) &&
-                previousMove.moveTo.row == originalPos.row &&
-                previousMove.moveTo.col != originalPos.col &&
-                previousMove.moveTo.col == eatPos.col)
-            return true;
-        return false;
+    public MoveList getLegalMoves() {
+        return legalMoves;
     }
 
-    private void endGame() {
-        state = GameState.END;
-        if (moveNotation.extraNotationList.indexOf(SpecialNotation.CHECKMATE) != -1) {
-            System.out.println((moveNotation.white ? "white" : "black") + " wins!");
-        }
-        else {
-            System.out.println("Draw");
-        }
+    public GameStatus getStatus() {
+        return status;
     }
 
-    private void highlight(Piece piece) {
-        highlightedPiece = piece;
-        state = GameState.HIGHLIGHTED;
-        display.repaint();
+    public String getStartFen() {
+        return startFen;
     }
 
-    private void writeMoves() {
-        for (int i = 0; i < pieces.size(); i++) {
-            Piece piece = pieces.get(i);
-            piece.moves = getPossibleMoves(piece);
+    // The PGN result of the game so far
+    public String getResult() {
+        switch (status) {
+            case CHECKMATE:
+                return board.whiteToMove ? "0-1" : "1-0";
+            case STALEMATE:
+            case DRAW:
+                return "1/2-1/2";
         }
+        return "*";
     }
 
-    private ArrayList<Cell> getPossibleMoves(Piece piece) {
-        ArrayList<Cell> output = getUncheckedMoves(piece);
-        ArrayList<Cell> bad = new ArrayList<>();
-        for (Cell c : output) {
-            if (checkCheck(piece, c)) bad.add(c);
-        }
-        for (Cell c : bad) {
-            output.remove(c);
-        }
-        return output;
+    public GameRecord getScore() {
+        return score;
     }
 
-    private ArrayList<Cell> getUncheckedMoves(Piece piece) {
-        switch (piece.type) {
-            case KING:
-                return getKingMoves(piece);
-            case QUEEN:
-                return getQueenMoves(piece);
-            case BISHOP:
-                return getBishopMoves(piece);
-            case KNIGHT:
-                return getKnightMoves(piece);
-            case ROOK:
-                return getRookMoves(piece);
-            case PAWN:
-                return getPawnMoves(piece);
-        }
-        return new ArrayList<>();
-    }
-
-    private ArrayList<Cell> getKingMoves(Piece piece) {
-        ArrayList<Cell> output = new ArrayList<>();
-        for (int row = -1; row <= 1; row++) {
-            for (int col = -1; col <= 1; col++) {
-                if (!(row == 0 && col == 0)) {
-                    Cell newCell = new Cell(piece.cell.getAddedColChar(col), piece.cell.row + row);
-                    if (getOverlapPiece(newCell).type == PieceType.EMPTY ||
-                            captureCheck(newCell, piece)) output.add(newCell);
-                }
-            }
-        }
-        return output;
+    // Notation for a ply of the score, worked out by taking the moves after it back on a copy of the board
+    // unless the position cache already has it
+    public String getString(int ply) {
+        return notation(ply, false);
     }
 
-    private ArrayList<Cell> getPawnMoves(Piece piece) {
-        ArrayList<Cell> output = new ArrayList<>();
+    public String getSan(int ply) {
+        return notation(ply, true);
+    }
 
-        // Move 1 space
-        Cell oneMove = new Cell(piece.cell.col, piece.cell.row + (piece.white ? 1 : -1));
-        if (checkEmpty(oneMove)) output.add(oneMove);
+    private String notation(int ply, boolean standard) {
+        int move = score.get(ply);
+        PositionCache.Entry cached = cache == null ? null : cache.get(board.keyBefore(ply));
+        int index = cached == null ? -1 : cached.indexOf(move);
+        String[] slots = cached == null ? null : standard ? cached.san : cached.strings;
+        if (index >= 0 && slots[index] != null) return slots[index];
 
-        // Move 2 spaces
-        if (output.size() > 0) {
-            if ((piece.white && piece.cell.row == 2) ||
-                    (!piece.white && piece.cell.row == 7)) {
-                Cell twoMove = new Cell(piece.cell.col, piece.cell.row + (piece.white ? 2 : -2));
-                if (checkEmpty(twoMove)) output.add(twoMove);
+        Board before = new Board(board);
+        for (int i = score.size(); i > ply; i--) {
+            before.unmakeMove();
+        }
+        MoveList moves = new MoveList();
+        MoveGenerator.generateLegal(before, moves);
+        NotationObject notation = new NotationObject(before, moves, move);
+        String text = standard ? notation.getSan() : notation.getString();
+        if (cache != null) {
+            if (index < 0) {
+                cached = cache.put(before.key(), moves, rulesStatus(before, moves));
+                index = cached.indexOf(move);
+                slots = standard ? cached.san : cached.strings;
             }
+            slots[index] = text;
         }
+        return text;
+    }
+
+    // The whole score in one replay from the start position
+    public String[] getNotation(boolean standard) {
+        Board replay = new Board();
+        Fen.load(replay, startFen);
+        MoveList moves = new MoveList();
+        String[] notation = new String[score.size()];
+        for (int i = 0; i < score.size(); i++) {
+            MoveGenerator.generateLegal(replay, moves);
+            NotationObject move = new NotationObject(replay, moves, score.get(i));
+            notation[i] = standard ? move.getSan() : move.getString();
+            replay.makeMove(score.get(i));
+        }
+        return notation;
+    }
 
-        // Capturing
-        Cell captureLeft = new Cell(piece.cell.getAddedColChar(piece.white ? 1 : -1),
-                piece.cell.row + (piece.white ? 1 : -1));
-        Cell captureRight = new Cell(piece.cell.getAddedColChar(piece.white ? -1 : 1),
-                piece.cell.row + (piece.white ? 1 : -1));
-        if (captureCheck(captureLeft, piece) || enPassantCheck(piece.cell, captureLeft))
-            output.add(captureLeft);
-        if (captureCheck(captureRight, piece) || enPassantCheck(piece.cell, captureRight))
-            output.add(captureRight);
+    public int findMove(int from, int to) {
+        for (int i = 0; i < legalMoves.size(); i++) {
+            int move = legalMoves.get(i);
+            if (Move.from(move) == from && Move.to(move) == to &&
+                    (!Move.isPromotion(move) || Move.promotion(move) == PieceType.QUEEN)) return move;
+        }
+        return Move.NONE;
+    }
 
-        return output;
+    // The legal move written in UCI's long algebraic form, like e2e4 or e7e8q, or Move.NONE
+    public int parseMove(String text) {
+        for (int i = 0; i < legalMoves.size(); i++) {
+            int move = legalMoves.get(i);
+            if (Move.toString(move).equals(text)) return move;
+        }
+        return Move.NONE;
     }
 
-    private ArrayList<Cell> getQueenMoves(Piece piece) {
-        ArrayList<Cell> output = getBishopMoves(piece);
-        output.addAll(getRookMoves(piece));
-        return output;
+    public boolean play(int move) {
+        if (status != GameStatus.ONGOING || !legalMoves.contains(move)) return false;
+
+        board.makeMove(move);
+        writeMoves(move);
+        status = positionStatus();
+        score.add(move);
+        return true;
     }
 
-    private ArrayList<Cell> getBishopMoves(Piece piece) {
-        int[][] moveList = {{1,1}, {-1, -1}, {-1, 1}, {1, -1}};
-        return testMovesFromMoveList(moveList, piece);
+    public void setPositionCache(PositionCache cache) {
+        this.cache = cache;
+        entry = null;
     }
 
-    private ArrayList<Cell> getRookMoves(Piece piece) {
-        return testMovesFromMoveList(UNIT_DIRECTIONS, piece);
+    // Checks every incrementally maintained move list against full generation
+    public void setVerifyMoves(boolean verify) {
+        tracker.setVerify(verify);
     }
 
-    private ArrayList<Cell> getKnightMoves(Piece piece) {
-        ArrayList<Cell> output = new ArrayList<>();
-        Cell moveA;
-        Cell moveB;
-        for (int[] moveSet : UNIT_DIRECTIONS) {
-            if (moveSet[0] != 0) {
-                moveA = new Cell(piece.cell.getAddedColChar(2 * moveSet[0]),
-                        piece.cell.row + 1);
-                moveB = new Cell(piece.cell.getAddedColChar(2 * moveSet[0]),
-                        piece.cell.row - 1);
-            }
-            else {
-                moveA = new Cell(piece.cell.getAddedColChar(1),
-                        piece.cell.row + (2 * moveSet[1]));
-                moveB = new Cell(piece.cell.getAddedColChar(-1),
-                        piece.cell.row + (2 * moveSet[1]));
-            }
-            if (captureCheck(moveA, piece) || checkEmpty(moveA)) output.add(moveA);
-            if (captureCheck(moveB, piece) || checkEmpty(moveB)) output.add(moveB);
-        }
-        return output;
-    }
-
-    private ArrayList<Cell> testMovesFromMoveList(int[][] moveList, Piece piece) {
-        boolean nextEmpty;
-        int incr;
-        Cell nextCell;
-        ArrayList<Cell> output = new ArrayList<>();
-
-        for (int[] moveSet : moveList) {
-            nextEmpty = true;
-            incr = 0;
-            while (nextEmpty) {
-                incr++;
-                nextCell = new Cell(piece.cell.getAddedColChar(incr * moveSet[0]),
-                        piece.cell.row + (incr * moveSet[1]));
-                if (captureCheck(nextCell, piece)) {
-                    output.add(nextCell);
-                    nextEmpty = false;
-                }
-                else if (checkEmpty(nextCell)) {
-                    output.add(nextCell);
-                }
-                else {
-                    nextEmpty = false;
-                }
-            }
-        }
-        return output;
+    public void setSearchThreads(int threads) {
+        searchThreads = Math.max(1, threads);
     }
 
-    private boolean captureCheck(Cell enemyCell, Piece attackPiece) {
-        Piece piece = getOverlapPiece(enemyCell);
-        return (piece.type != PieceType.NONE &&
-                piece.type != PieceType.EMPTY &&
-                piece.white != attackPiece.white);
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
     }
 
-    private boolean checkEmpty(Cell cell) {
-        return (getOverlapPiece(cell).type == PieceType.EMPTY);
+    // The legal book moves for the current position with their weights; returns the total weight
+    public int getBookMoves(MoveList out, int[] weights) {
+        if (book == null) {
+            out.clear();
+            return 0;
+        }
+        return book.bookMoves(board, legalMoves, out, weights);
     }
 
-    private Piece getOverlapPiece(Cell cell) {
-        for (Piece piece : pieces) {
-            if (cell.compare(piece.cell)) return piece;
+    public int findBestMove(long millis) {
+        if (book != null) {
+            int move = book.pick(board, legalMoves);
+            if (move != Move.NONE) return move;
         }
-        if (cell.row < 1 ||
-                cell.row > 8 ||
-                charLetterToInt(cell.col) < 1 ||
-                charLetterToInt(cell.col) > 8) {
-            return new Piece(PieceType.NONE);
-        } else {
-            return new Piece(PieceType.EMPTY);
+        if (table == null) table = new TranspositionTable(HASH_MEGABYTES);
+        if (search == null || search.getThreads() != searchThreads) {
+            if (search != null) search.shutdown();
+            search = new ParallelSearch(table, searchThreads);
         }
+        return search.think(board, millis / 2, millis, Search.MAX_PLY);
     }
 
-    private boolean checkCheck(Piece piece, Cell newLocation) {
-        Cell oldLocation = piece.cell;
-        Piece eatenPiece = getOverlapPiece(newLocation);
-
-        if (eatenPiece.type != PieceType.EMPTY) eatenPiece.tempDelete = true;
-        piece.cell = newLocation;
-
-        boolean check = checkCheck(piece.white);
-
-        if (eatenPiece.type != PieceType.EMPTY) eatenPiece.tempDelete = false;
-        piece.cell = oldLocation;
+    public boolean takeBack() {
+        if (score.isEmpty()) return false;
+        int move = score.removeLast();
+        board.unmakeMove();
+        writeMoves(move);
+        status = GameStatus.ONGOING;
+        return true;
+    }
 
-        return check;
+    public String exportFen() {
+        return Fen.export(board);
     }
 
-    //TODO: King can eat INTO Check -- NO
-    private boolean checkCheck(boolean white) {
-        Cell kingCell = getKing(white).cell;
-        if (kingCell != null) {
-            for (Piece piece : pieces) {
-                if (piece.white != white && !piece.tempDelete) {
-                    ArrayList<Cell> pieceMoves = getUncheckedMoves(piece);
-                    for (Cell testCell : pieceMoves) {
-                        if (testCell.compare(kingCell)) return true;
-                    }
-                }
-            }
+    public String exportRecord() {
+        StringBuilder sb = new StringBuilder();
+        String[] notation = getNotation(false);
+        for (int i = 0; i < notation.length; i++) {
+            if (i % 2 == 0) sb.append(i / 2 + 1).append(". ");
+            sb.append(notation[i]).append(' ');
         }
-        return false;
+        return sb.toString().trim();
     }
 
-    private Piece checkMateCheck() {
-        Piece king = getKing(whiteTurn);
-        if (checkCheck(whiteTurn)) {
-            for (Piece piece : pieces) {
-                for (Cell c : piece.moves) {
-                    if (!checkCheck(king, c)) return new Piece(PieceType.NONE);
-                }
-            }
-            return king;
-        }
-        return new Piece(PieceType.NONE);
+    void writeMoves() {
+        tracker.rebuild(board, legalMoves);
+        trackerStale = false;
+        entry = null;
     }
 
-    private Piece getKing(boolean white) {
-        for (Piece piece : pieces) {
-            if (piece.type == PieceType.KING && piece.white == white) return piece;
+    // Only the pieces the move touched are regenerated, and nothing at all for a cached position; the
+    // tracker then falls behind and is rebuilt the next time it is needed
+    void writeMoves(int move) {
+        entry = cache == null ? null : cache.get(board.key());
+        if (entry != null) {
+            entry.copyMoves(legalMoves);
+            trackerStale = true;
+        }
+        else if (trackerStale) {
+            writeMoves();
+        }
+        else {
+            tracker.update(board, move, legalMoves);
         }
-        return new Piece(PieceType.NONE);
     }
 
-    private boolean drawCheck() {
-        // TODO DRAW CHECK - Stalemate,
-        //  & insuff check material:KvK, KvB/K, KvK/K, K/BvK/B (B same color)
-        return false;
-    }
-
-    @Override
-    public void mouseClicked(MouseEvent e) {
-        if (state != GameState.END) {
-            if (state == GameState.HIGHLIGHTED) {
-                movePiece(e);
-            } else {
-                pickPiece(e);
-            }
-        }
+    boolean checkMateCheck() {
+        return MoveGenerator.status(board) == GameStatus.CHECKMATE;
     }
 
-    @Override
-    public void mousePressed(MouseEvent e) {}
+    private GameStatus positionStatus() {
+        GameStatus status = rulesStatus();
+        if (status == GameStatus.ONGOING && drawCheck()) return GameStatus.DRAW;
+        return status;
+    }
 
-    @Override
-    public void mouseReleased(MouseEvent e) {}
+    // A third occurrence of the position or fifty moves without a capture or pawn move only draw once a
+    // player claims them, so play goes on past them
+    public boolean isClaimableDraw() {
+        return status == GameStatus.ONGOING && (board.halfmoveClock >= 100 || board.repetitions() >= 2);
+    }
+
+    // Mate and stalemate depend on the position alone, so they are cached along with its moves
+    private GameStatus rulesStatus() {
+        if (cache == null) return rulesStatus(board, legalMoves);
+        if (entry == null) entry = cache.put(board.key(), legalMoves, rulesStatus(board, legalMoves));
+        return entry.status;
+    }
 
-    @Override
-    public void mouseEntered(MouseEvent e) {}
+    // From moves already generated for the position, where the oracle would only search them again
+    private static GameStatus rulesStatus(Board board, MoveList legalMoves) {
+        if (legalMoves.size() > 0) return GameStatus.ONGOING;
+        return board.inCheck(board.whiteToMove) ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+    }
 
-    @Override
-    public void mouseExited(MouseEvent e) {}
+    // The draws that end the game without a claim: insufficient material, the seventy-five-move rule or a
+    // fifth occurrence of the position
+    private boolean drawCheck() {
+        return board.insufficientMaterial() || board.halfmoveClock >= 150 || board.repetitions() >= 4;
+    }
 
     public static String getStringCharForNumber(int i) {
         return String.valueOf(getCharForNumber(i));
@@ -446,16 +353,20 @@ public class Game implements MouseListener {
     }
 
     public static PieceType letterToPieceType(String letter) {
+        return letter.length() == 1 ? letterToPieceType(letter.charAt(0)) : PieceType.PAWN;
+    }
+
+    public static PieceType letterToPieceType(char letter) {
         switch (letter) {
-            case "K":
+            case 'K':
                 return PieceType.KING;
-            case "Q":
+            case 'Q':
                 return PieceType.QUEEN;
-            case "B":
+            case 'B':
                 return PieceType.BISHOP;
-            case "N":
+            case 'N':
                 return PieceType.KNIGHT;
-            case "R":
+            case 'R':
                 return PieceType.ROOK;
         }
         return PieceType.PAWN;
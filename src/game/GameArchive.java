@@ -0,0 +1,230 @@
+package game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Games stored as packed moves in one binary file, mapped straight from disk like the opening book. All
+// numbers are big-endian:
+//   header  magic, game count, index offset (int, int, long)
+//   game    result (byte), start FEN length and ASCII bytes (short, empty for the standard start),
+//           ply count (short), then two bytes per move
+//   index   the offset of every game (long each)
+// The index finds any game in constant time, and a position at any ply is the start position with that
+// many moves made straight off the mapping, with no notation to parse.
+public class GameArchive {
+
+    private static final int MAGIC = 0x43474131;
+    private static final int HEADER_BYTES = 16;
+    private static final String[] RESULTS = {"*", "1-0", "0-1", "1/2-1/2"};
+
+    private final MappedByteBuffer data;
+    private final int size;
+    private final int indexOffset;
+
+    public GameArchive(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Archive too large to map: " + path);
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.capacity() < HEADER_BYTES || data.getInt(0) != MAGIC) throw new IOException("Not a game archive: " + path);
+        size = data.getInt(4);
+        indexOffset = (int) data.getLong(8);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getResult(int game) {
+        return RESULTS[data.get(offset(game))];
+    }
+
+    public String getStartFen(int game) {
+        int offset = offset(game) + 1;
+        int length = data.getShort(offset) & 0xffff;
+        if (length == 0) return Fen.START;
+        byte[] fen = new byte[length];
+        for (int i = 0; i < length; i++) {
+            fen[i] = data.get(offset + 2 + i);
+        }
+        return new String(fen, StandardCharsets.US_ASCII);
+    }
+
+    public int getPlies(int game) {
+        int offset = movesOffset(game);
+        return data.getShort(offset - 2) & 0xffff;
+    }
+
+    public int getMove(int game, int ply) {
+        return data.getShort(movesOffset(game) + ply * 2) & 0xffff;
+    }
+
+    // Sets the board to the game's position after the given number of plies
+    public void position(int game, int ply, Board board) {
+        if (ply > getPlies(game)) throw new IndexOutOfBoundsException("Ply " + ply + " of " + getPlies(game));
+        Fen.load(board, getStartFen(game));
+        int offset = movesOffset(game);
+        for (int i = 0; i < ply; i++) {
+            board.makeMove(data.getShort(offset + i * 2) & 0xffff);
+        }
+    }
+
+    // Replays the game's first plies on a Game, so it has its score and status as if they had been played on it
+    public void load(int game, int ply, Game into) {
+        into.loadFen(getStartFen(game));
+        int offset = movesOffset(game);
+        for (int i = 0; i < ply; i++) {
+            if (!into.play(data.getShort(offset + i * 2) & 0xffff)) {
+                throw new IllegalStateException("Illegal move at ply " + i + " of game " + game);
+            }
+        }
+    }
+
+    private int offset(int game) {
+        if (game < 0 || game >= size) throw new IndexOutOfBoundsException("Game " + game + " of " + size);
+        return (int) data.getLong(indexOffset + game * 8);
+    }
+
+    private int movesOffset(int game) {
+        int offset = offset(game) + 1;
+        return offset + 2 + (data.getShort(offset) & 0xffff) + 2;
+    }
+
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private long position = HEADER_BYTES;
+        private long[] offsets = new long[1024];
+        private int size;
+
+        public Writer(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_BYTES);
+        }
+
+        public void add(Game game) throws IOException {
+            add(game.getStartFen(), game.getScore(), game.getResult());
+        }
+
+        public void add(String startFen, GameRecord moves, String result) throws IOException {
+            byte[] fen = startFen.equals(Fen.START) ? new byte[0] : startFen.getBytes(StandardCharsets.US_ASCII);
+            if (fen.length > 0xffff || moves.size() > 0xffff) throw new IllegalArgumentException("Game too long to archive");
+            if (size == offsets.length) offsets = Arrays.copyOf(offsets, size * 2);
+            offsets[size++] = position;
+
+            int code = Math.max(0, Arrays.asList(RESULTS).indexOf(result));
+            ensure(1 + 2 + fen.length + 2);
+            buffer.put((byte) code);
+            buffer.putShort((short) fen.length);
+            buffer.put(fen);
+            buffer.putShort((short) moves.size());
+            for (int i = 0; i < moves.size(); i++) {
+                ensure(2);
+                buffer.putShort((short) moves.get(i));
+            }
+            position += 1 + 2 + fen.length + 2 + moves.size() * 2;
+        }
+
+        // Writes the index and then the header, so an archive cut short never looks complete
+        @Override
+        public void close() throws IOException {
+            try {
+                long indexOffset = position;
+                for (int i = 0; i < size; i++) {
+                    ensure(8);
+                    buffer.putLong(offsets[i]);
+                }
+                flush();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(size).putLong(indexOffset).flip();
+                while (header.hasRemaining()) channel.write(header, header.position());
+            }
+            finally {
+                channel.close();
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) flush();
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    // pack <archive> <pgn>... stores the games from PGN files; show <archive> <game> [ply] prints one
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("pack")) {
+            pack(Paths.get(args[1]), Arrays.copyOfRange(args, 2, args.length));
+        }
+        else if (args.length >= 3 && args[0].equals("show")) {
+            GameArchive archive = new GameArchive(Paths.get(args[1]));
+            int game = Integer.parseInt(args[2]);
+            int ply = args.length > 3 ? Integer.parseInt(args[3]) : archive.getPlies(game);
+            long start = System.nanoTime();
+            Game replay = new Game();
+            archive.load(game, ply, replay);
+            long nanos = System.nanoTime() - start;
+            System.out.println(replay.exportRecord());
+            System.out.println(replay.exportFen());
+            System.out.println(String.format("game %d of %d, ply %d of %d, result %s, loaded in %.1f us", game,
+                    archive.size(), ply, archive.getPlies(game), archive.getResult(game), nanos / 1e3));
+        }
+        else {
+            System.out.println("usage: GameArchive pack <archive> <pgn>... | show <archive> <game> [ply]");
+        }
+    }
+
+    private static void pack(Path target, String[] sources) throws IOException {
+        long start = System.nanoTime();
+        long plies = 0;
+        long skipped = 0;
+        Game game = new Game();
+        boolean[] illegal = new boolean[1];
+        String[] result = new String[1];
+        PgnReader.Listener listener = new PgnReader.Listener() {
+            @Override
+            public void illegal(String reason) {
+                illegal[0] = true;
+            }
+
+            @Override
+            public void endGame(String declared) {
+                result[0] = declared;
+            }
+        };
+        try (Writer writer = new Writer(target)) {
+            for (String source : sources) {
+                try (PgnReader reader = new PgnReader(Paths.get(source))) {
+                    illegal[0] = false;
+                    while (reader.nextGame(game, listener)) {
+                        if (illegal[0]) {
+                            skipped++;
+                            illegal[0] = false;
+                            continue;
+                        }
+                        writer.add(game.getStartFen(), game.getScore(), result[0]);
+                        plies += game.getScore().size();
+                    }
+                }
+            }
+        }
+        GameArchive archive = new GameArchive(target);
+        System.out.println(String.format("%d games, %d plies, %d skipped as illegal, %d bytes (%.1f per game) in %.2f s",
+                archive.size(), plies, skipped, target.toFile().length(),
+                (double) target.toFile().length() / Math.max(1, archive.size()), (System.nanoTime() - start) / 1e9));
+    }
+
+}
@@ -0,0 +1,62 @@
+package game;
+
+import java.util.Arrays;
+
+// The moves of a game at two bytes each: a packed move's from, to and flags fill exactly 16 bits,
+// so the record keeps no board state and notation is worked out from the moves when it is wanted
+public class GameRecord {
+
+    private short[] moves;
+    private int size;
+    // Bumped whenever the record starts over, so a viewer can tell a new game of the same length from its own
+    private int version;
+
+    public GameRecord() {
+        this(64);
+    }
+
+    public GameRecord(int capacity) {
+        moves = new short[Math.max(1, capacity)];
+    }
+
+    public void add(int move) {
+        if (size == moves.length) moves = Arrays.copyOf(moves, size * 2);
+        moves[size++] = (short) move;
+    }
+
+    public int get(int ply) {
+        if (ply >= size) throw new IndexOutOfBoundsException("Ply " + ply + " of " + size);
+        return moves[ply] & 0xffff;
+    }
+
+    public int removeLast() {
+        return moves[--size] & 0xffff;
+    }
+
+    public int last() {
+        return size == 0 ? Move.NONE : get(size - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void clear() {
+        size = 0;
+        version++;
+    }
+
+    // Drops the spare capacity, for records that are kept once the game is over
+    public void trim() {
+        if (moves.length > size) moves = Arrays.copyOf(moves, Math.max(1, size));
+    }
+
+}
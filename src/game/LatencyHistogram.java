@@ -0,0 +1,50 @@
+package game;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Counts latencies in one-microsecond buckets up to a limit, with everything slower in the last bucket;
+// safe to record into from any number of threads
+public class LatencyHistogram {
+
+    private static final int MAX_MICROS = 10_000;
+
+    private final AtomicLongArray counts = new AtomicLongArray(MAX_MICROS + 1);
+
+    public void record(long nanos) {
+        counts.incrementAndGet((int) Math.min(MAX_MICROS, Math.max(0, nanos / 1000)));
+    }
+
+    public long count() {
+        long total = 0;
+        for (int i = 0; i <= MAX_MICROS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    // The latency in microseconds that the given fraction of samples came in at or under
+    public long percentile(double fraction) {
+        long total = count();
+        if (total == 0) return 0;
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i <= MAX_MICROS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) return i;
+        }
+        return MAX_MICROS;
+    }
+
+    public void reset() {
+        for (int i = 0; i <= MAX_MICROS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("p50 %d us, p99 %d us, p99.9 %d us%s", percentile(0.5), percentile(0.99),
+                percentile(0.999), percentile(1) >= MAX_MICROS ? " (slowest over " + MAX_MICROS + " us)" : "");
+    }
+
+}
@@ -0,0 +1,177 @@
+package game;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+// Drives a SessionServer with random games and reports sustained moves per second with round-trip and
+// server-side validation latency. Each connection keeps its own games going and waits for every reply.
+public class LoadGenerator {
+
+    private final String host;
+    private final int port;
+    private final int gamesPerConnection;
+    private final LongAdder moves = new LongAdder();
+    private final LatencyHistogram roundTrips = new LatencyHistogram();
+    private volatile boolean running = true;
+
+    public LoadGenerator(String host, int port, int gamesPerConnection) {
+        this.host = host;
+        this.port = port;
+        this.gamesPerConnection = gamesPerConnection;
+    }
+
+    private class Client implements Runnable {
+        private final Random random;
+        private final MoveList legal = new MoveList();
+
+        Client(long seed) {
+            random = new Random(seed);
+        }
+
+        @Override
+        public void run() {
+            try (Socket socket = new Socket(host, port)) {
+                socket.setTcpNoDelay(true);
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+
+                long[] ids = new long[gamesPerConnection];
+                Board[] boards = new Board[gamesPerConnection];
+                for (int i = 0; i < gamesPerConnection; i++) {
+                    boards[i] = new Board();
+                    ids[i] = newGame(in, out, boards[i]);
+                }
+
+                while (running) {
+                    for (int i = 0; i < gamesPerConnection && running; i++) {
+                        Board board = boards[i];
+                        MoveGenerator.generateLegal(board, legal);
+                        int move = legal.get(random.nextInt(legal.size()));
+                        long start = System.nanoTime();
+                        String reply = request(in, out, "move " + ids[i] + " " + Move.toString(move));
+                        roundTrips.record(System.nanoTime() - start);
+                        if (!reply.startsWith("ok ")) throw new IllegalStateException("Unexpected reply: " + reply);
+                        moves.increment();
+                        board.makeMove(move);
+                        if (!reply.endsWith(GameStatus.ONGOING.name())) {
+                            request(in, out, "close " + ids[i]);
+                            ids[i] = newGame(in, out, board);
+                        }
+                    }
+                }
+                out.write("quit\n");
+                out.flush();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private long newGame(BufferedReader in, Writer out, Board board) throws IOException {
+            Fen.load(board, Fen.START);
+            return Long.parseLong(request(in, out, "new").substring("game ".length()));
+        }
+    }
+
+    private static String request(BufferedReader in, Writer out, String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+        out.flush();
+        String reply = in.readLine();
+        if (reply == null) throw new IOException("Server closed the connection");
+        return reply;
+    }
+
+    // Runs the clients for warm-up plus measured seconds and prints what the measured part sustained
+    public void run(int connections, int warmupSeconds, int seconds, SessionRegistry embedded)
+            throws IOException, InterruptedException {
+        ArrayList<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            Thread thread = new Thread(new Client(i), "load-client-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            clients.add(thread);
+        }
+
+        Thread.sleep(warmupSeconds * 1000L);
+        roundTrips.reset();
+        if (embedded != null) embedded.getValidation().reset();
+        long startMoves = moves.sum();
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        long measured = moves.sum() - startMoves;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        running = false;
+        for (Thread client : clients) client.join();
+
+        System.out.println(String.format("%d connections x %d games: %.0f moves/s over %.1f s", connections,
+                gamesPerConnection, measured / elapsed, elapsed));
+        System.out.println("round trip " + roundTrips);
+        try (Socket socket = new Socket(host, port)) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+            System.out.println("server " + request(in, out, "stats"));
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String host = InetAddress.getLoopbackAddress().getHostAddress();
+        int port = SessionServer.DEFAULT_PORT;
+        int connections = 64;
+        int games = 100;
+        int warmup = 3;
+        int seconds = 10;
+        boolean embedded = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--embedded")) {
+                embedded = true;
+            }
+            else if (i + 1 < args.length) {
+                switch (args[i]) {
+                    case "--host":
+                        host = args[++i];
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--connections":
+                        connections = Integer.parseInt(args[++i]);
+                        break;
+                    case "--games":
+                        games = Integer.parseInt(args[++i]);
+                        break;
+                    case "--warmup":
+                        warmup = Integer.parseInt(args[++i]);
+                        break;
+                    case "--seconds":
+                        seconds = Integer.parseInt(args[++i]);
+                        break;
+                }
+            }
+        }
+
+        // Embedded runs host the server in this process on a free port
+        SessionServer server = null;
+        if (embedded) {
+            server = new SessionServer(new SessionRegistry(), 0);
+            server.start();
+            port = server.getPort();
+        }
+        new LoadGenerator(host, port, games).run(connections, warmup, seconds,
+                server != null ? server.getRegistry() : null);
+        if (server != null) server.close();
+    }
+
+}
@@ -0,0 +1,60 @@
+package game;
+
+public class Move {
+
+    // Packed move: bits 0-5 from square, bits 6-11 to square, bits 12-15 flags
+    public static final int NONE = 0;
+
+    public static final int QUIET = 0;
+    public static final int DOUBLE_PUSH = 1;
+    public static final int CASTLE_KING = 2;
+    public static final int CASTLE_QUEEN = 3;
+    public static final int CAPTURE = 4;
+    public static final int EN_PASSANT = 5;
+    public static final int PROMO_KNIGHT = 8;
+    public static final int PROMO_BISHOP = 9;
+    public static final int PROMO_ROOK = 10;
+    public static final int PROMO_QUEEN = 11;
+
+    private static final PieceType[] PROMOTIONS = {
+            PieceType.KNIGHT, PieceType.BISHOP, PieceType.ROOK, PieceType.QUEEN};
+
+    private Move() {}
+
+    public static int encode(int from, int to, int flags) {
+        return from | (to << 6) | (flags << 12);
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int flags(int move) {
+        return (move >>> 12) & 15;
+    }
+
+    public static boolean isCapture(int move) {
+        return (flags(move) & CAPTURE) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (flags(move) & PROMO_KNIGHT) != 0;
+    }
+
+    public static PieceType promotion(int move) {
+        return isPromotion(move) ? PROMOTIONS[flags(move) & 3] : PieceType.NONE;
+    }
+
+    public static String toString(int move) {
+        Cell from = Board.cell(from(move));
+        Cell to = Board.cell(to(move));
+        String s = "" + from.col + from.row + to.col + to.row;
+        if (isPromotion(move)) s += Game.pieceTypeToLetter(promotion(move)).toLowerCase();
+        return s;
+    }
+
+}
@@ -0,0 +1,252 @@
+package game;
+
+public class MoveGenerator {
+
+    private MoveGenerator() {}
+
+    public static void generate(Board board, boolean white, MoveList out) {
+        out.clear();
+        for (long bb = board.colour(white); bb != 0; bb &= bb - 1) {
+            generate(board, Long.numberOfTrailingZeros(bb), out);
+        }
+    }
+
+    public static void generateLegal(Board board, MoveList out) {
+        out.clear();
+        boolean white = board.whiteToMove;
+        long us = board.colour(white);
+        long them = board.colour(!white);
+        long occupied = us | them;
+        long kingBit = board.pieces(PieceType.KING, white);
+        int king = Long.numberOfTrailingZeros(kingBit);
+        long checkers = 0;
+        long pinned = 0;
+
+        if (kingBit != 0) {
+            checkers = board.attackersTo(king, !white, occupied);
+
+            // The king is lifted off the board so it can't hide behind itself on a checking ray
+            for (long targets = Attacks.king(king) & ~us; targets != 0; targets &= targets - 1) {
+                int to = Long.numberOfTrailingZeros(targets);
+                if (board.attackersTo(to, !white, occupied ^ kingBit) == 0) addMove(board, king, to, out);
+            }
+            if (Long.bitCount(checkers) > 1) return;
+            pinned = pinnedPieces(board, white, king, occupied);
+        }
+
+        // With a single checker every other move has to capture it or block the ray
+        long checkMask = checkers == 0 ? ~0L :
+                checkers | Attacks.between(king, Long.numberOfTrailingZeros(checkers));
+
+        for (long bb = us & ~kingBit; bb != 0; bb &= bb - 1) {
+            int sq = Long.numberOfTrailingZeros(bb);
+            long mask = ((pinned >>> sq) & 1) != 0 ? checkMask & Attacks.line(king, sq) : checkMask;
+            PieceType type = board.typeAt(sq);
+            if (type == PieceType.PAWN) {
+                addLegalPawnMoves(board, sq, mask, out);
+            }
+            else {
+                for (long targets = Attacks.forPiece(type, sq, occupied) & ~us & mask;
+                     targets != 0; targets &= targets - 1) {
+                    addMove(board, sq, Long.numberOfTrailingZeros(targets), out);
+                }
+            }
+        }
+
+        if (kingBit != 0 && checkers == 0) addCastles(board, white, king, out);
+    }
+
+    // Stops at the first legal move found. Out of check any unpinned piece with a target will do, which is
+    // a single bitboard test; in check the king steps come first, then captures of the checker, then blocks.
+    public static boolean hasAnyLegalMove(Board board) {
+        boolean white = board.whiteToMove;
+        long us = board.colour(white);
+        long occupied = board.occupied();
+        long kingBit = board.pieces(PieceType.KING, white);
+        int king = Long.numberOfTrailingZeros(kingBit);
+        long checkers = kingBit == 0 ? 0 : board.attackersTo(king, !white, occupied);
+
+        if (checkers == 0) {
+            long pinned = kingBit == 0 ? 0 : pinnedPieces(board, white, king, occupied);
+            for (long bb = us & ~kingBit; bb != 0; bb &= bb - 1) {
+                int sq = Long.numberOfTrailingZeros(bb);
+                long mask = ((pinned >>> sq) & 1) != 0 ? Attacks.line(king, sq) : ~0L;
+                if ((pieceTargets(board, sq, white, occupied) & mask) != 0) return true;
+            }
+            // Castling never needs checking: whenever it is legal so is the king's step towards the rook
+            return kingBit != 0 && hasKingMove(board, white, king, us, occupied) || hasEnPassant(board, white);
+        }
+
+        if (hasKingMove(board, white, king, us, occupied)) return true;
+        if (Long.bitCount(checkers) > 1) return false;
+
+        // A pinned piece can never capture the checker or block it, since it would have to leave its line
+        int checker = Long.numberOfTrailingZeros(checkers);
+        long defenders = us & ~kingBit & ~pinnedPieces(board, white, king, occupied);
+        if ((board.attackersTo(checker, white, occupied) & defenders) != 0) return true;
+
+        long pawns = board.pieces(PieceType.PAWN, white) & defenders;
+        for (long blocks = Attacks.between(king, checker); blocks != 0; blocks &= blocks - 1) {
+            int sq = Long.numberOfTrailingZeros(blocks);
+            if ((board.attackersTo(sq, white, occupied) & defenders & ~pawns) != 0) return true;
+            int behind = white ? sq - 8 : sq + 8;
+            if (behind >= 0 && behind < 64) {
+                if (((pawns >>> behind) & 1) != 0) return true;
+                int start = white ? sq - 16 : sq + 16;
+                if ((sq >>> 3) == (white ? 3 : 4) && board.isEmpty(behind) && ((pawns >>> start) & 1) != 0) return true;
+            }
+        }
+        return hasEnPassant(board, white);
+    }
+
+    public static GameStatus status(Board board) {
+        if (hasAnyLegalMove(board)) return GameStatus.ONGOING;
+        return board.inCheck(board.whiteToMove) ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+    }
+
+    // Squares the piece could move to, ignoring pins and checks
+    private static long pieceTargets(Board board, int sq, boolean white, long occupied) {
+        PieceType type = board.typeAt(sq);
+        if (type != PieceType.PAWN) return Attacks.forPiece(type, sq, occupied) & ~board.colour(white);
+        int oneMove = white ? sq + 8 : sq - 8;
+        if (oneMove < 0 || oneMove >= 64) return 0;
+        long push = board.isEmpty(oneMove) ? 1L << oneMove : 0;
+        return push | (Attacks.pawn(sq, white) & board.colour(!white));
+    }
+
+    private static boolean hasKingMove(Board board, boolean white, int king, long us, long occupied) {
+        long kingBit = 1L << king;
+        for (long targets = Attacks.king(king) & ~us; targets != 0; targets &= targets - 1) {
+            if (board.attackersTo(Long.numberOfTrailingZeros(targets), !white, occupied ^ kingBit) == 0) return true;
+        }
+        return false;
+    }
+
+    private static boolean hasEnPassant(Board board, boolean white) {
+        if (board.epSquare == Board.NO_SQUARE || (board.epSquare >>> 3) != (white ? 5 : 2)) return false;
+        for (long bb = Attacks.pawn(board.epSquare, !white) & board.pieces(PieceType.PAWN, white);
+             bb != 0; bb &= bb - 1) {
+            board.makeMove(Move.encode(Long.numberOfTrailingZeros(bb), board.epSquare, Move.EN_PASSANT));
+            boolean legal = !board.inCheck(white);
+            board.unmakeMove();
+            if (legal) return true;
+        }
+        return false;
+    }
+
+    static long pinnedPieces(Board board, boolean white, int king, long occupied) {
+        long queens = board.pieces(PieceType.QUEEN, !white);
+        long snipers = (Attacks.rook(king, 0) & (board.pieces(PieceType.ROOK, !white) | queens)) |
+                (Attacks.bishop(king, 0) & (board.pieces(PieceType.BISHOP, !white) | queens));
+        long pinned = 0;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Attacks.between(king, Long.numberOfTrailingZeros(snipers)) & occupied;
+            if (Long.bitCount(blockers) == 1) pinned |= blockers & board.colour(white);
+        }
+        return pinned;
+    }
+
+    private static void addLegalPawnMoves(Board board, int sq, long mask, MoveList out) {
+        boolean white = board.isWhite(sq);
+        int forward = white ? 8 : -8;
+        int row = sq >>> 3;
+        if (row == (white ? 7 : 0)) return;
+
+        // Move 1 space, then 2 spaces from the starting row
+        int oneMove = sq + forward;
+        if (board.isEmpty(oneMove)) {
+            if (((mask >>> oneMove) & 1) != 0) addPawnMove(sq, oneMove, Move.QUIET, out);
+            int twoMove = oneMove + forward;
+            if (row == (white ? 1 : 6) && board.isEmpty(twoMove) && ((mask >>> twoMove) & 1) != 0) {
+                out.add(Move.encode(sq, twoMove, Move.DOUBLE_PUSH));
+            }
+        }
+
+        // Capturing
+        long attacks = Attacks.pawn(sq, white);
+        for (long targets = attacks & board.colour(!white) & mask; targets != 0; targets &= targets - 1) {
+            addPawnMove(sq, Long.numberOfTrailingZeros(targets), Move.CAPTURE, out);
+        }
+
+        // En passant can uncover a check along the rank, so it is simply tried on the board
+        if (board.epSquare != Board.NO_SQUARE && ((attacks >>> board.epSquare) & 1) != 0 &&
+                (board.epSquare >>> 3) == (white ? 5 : 2)) {
+            int move = Move.encode(sq, board.epSquare, Move.EN_PASSANT);
+            board.makeMove(move);
+            if (!board.inCheck(white)) out.add(move);
+            board.unmakeMove();
+        }
+    }
+
+    static void addCastles(Board board, boolean white, int king, MoveList out) {
+        int base = white ? 0 : 56;
+        if (king != base + 4) return;
+        int rights = board.castling >>> (white ? 0 : 2);
+        if ((rights & Board.WHITE_KING_SIDE) != 0 && board.isEmpty(base + 5) && board.isEmpty(base + 6) &&
+                !board.isAttacked(base + 5, !white) && !board.isAttacked(base + 6, !white)) {
+            out.add(Move.encode(king, base + 6, Move.CASTLE_KING));
+        }
+        if ((rights & Board.WHITE_QUEEN_SIDE) != 0 && board.isEmpty(base + 3) && board.isEmpty(base + 2) &&
+                board.isEmpty(base + 1) && !board.isAttacked(base + 3, !white) && !board.isAttacked(base + 2, !white)) {
+            out.add(Move.encode(king, base + 2, Move.CASTLE_QUEEN));
+        }
+    }
+
+    static void addMove(Board board, int from, int to, MoveList out) {
+        out.add(Move.encode(from, to, board.isEmpty(to) ? Move.QUIET : Move.CAPTURE));
+    }
+
+    public static void generate(Board board, int sq, MoveList out) {
+        PieceType type = board.typeAt(sq);
+        if (type == PieceType.PAWN) {
+            addPawnMoves(board, sq, out);
+            return;
+        }
+        long targets = Attacks.forPiece(type, sq, board.occupied()) & ~board.colour(board.isWhite(sq));
+        for (; targets != 0; targets &= targets - 1) {
+            addMove(board, sq, Long.numberOfTrailingZeros(targets), out);
+        }
+    }
+
+    private static void addPawnMoves(Board board, int sq, MoveList out) {
+        boolean white = board.isWhite(sq);
+        int col = sq & 7;
+        int row = (sq >>> 3) + (white ? 1 : -1);
+        if (row < 0 || row > 7) return;
+        int oneMove = row * 8 + col;
+
+        // Move 1 space, then 2 spaces from the starting row
+        if (board.isEmpty(oneMove)) {
+            addPawnMove(sq, oneMove, Move.QUIET, out);
+            if ((sq >>> 3) == (white ? 1 : 6)) {
+                int twoMove = oneMove + (white ? 8 : -8);
+                if (board.isEmpty(twoMove)) out.add(Move.encode(sq, twoMove, Move.DOUBLE_PUSH));
+            }
+        }
+
+        // Capturing
+        for (int side = -1; side <= 1; side += 2) {
+            if (col + side < 0 || col + side > 7) continue;
+            int to = oneMove + side;
+            if (!board.isEmpty(to)) {
+                if (board.isWhite(to) != white) addPawnMove(sq, to, Move.CAPTURE, out);
+            }
+            else if (to == board.epSquare && row == (white ? 5 : 2)) {
+                out.add(Move.encode(sq, to, Move.EN_PASSANT));
+            }
+        }
+    }
+
+    static void addPawnMove(int from, int to, int flags, MoveList out) {
+        int row = to >>> 3;
+        if (row == 0 || row == 7) {
+            for (int promo = Move.PROMO_KNIGHT; promo <= Move.PROMO_QUEEN; promo++) {
+                out.add(Move.encode(from, to, flags | promo));
+            }
+        }
+        else {
+            out.add(Move.encode(from, to, flags));
+        }
+    }
+
+}
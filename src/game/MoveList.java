@@ -0,0 +1,49 @@
+package game;
+
+public class MoveList {
+
+    public static final int CAPACITY = 256;
+
+    private final int[] moves = new int[CAPACITY];
+    private int size;
+
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    public int get(int i) {
+        return moves[i];
+    }
+
+    public void set(int i, int move) {
+        moves[i] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void truncate(int size) {
+        this.size = size;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) return true;
+        }
+        return false;
+    }
+
+    public static MoveList[] perPly(int plies) {
+        MoveList[] lists = new MoveList[plies];
+        for (int i = 0; i < plies; i++) {
+            lists[i] = new MoveList();
+        }
+        return lists;
+    }
+
+}
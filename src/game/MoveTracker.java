@@ -0,0 +1,160 @@
+package game;
+
+// Keeps every piece's pseudo-legal targets for both colours between moves, together with the squares each
+// piece's moves depend on. A quiet move or capture only touches its from and to squares, so only the pieces
+// on them and the pieces watching them are recomputed; the legal list is then read off the cached targets.
+public class MoveTracker {
+
+    // Pseudo-legal destinations of the piece on each square, empty squares hold 0
+    private final long[] targets = new long[64];
+    // Squares whose occupants decide the piece's moves: its attacks, plus the push squares for a pawn
+    private final long[] watched = new long[64];
+    // For each square, the pieces of either colour watching it; its attackers and defenders
+    private final long[] watchers = new long[64];
+    private final MoveList check = new MoveList();
+    private boolean verify;
+
+    // When set, every incremental list is diffed against full generation and a mismatch throws
+    public void setVerify(boolean verify) {
+        this.verify = verify;
+    }
+
+    public void rebuild(Board board, MoveList out) {
+        for (int sq = 0; sq < 64; sq++) {
+            targets[sq] = 0;
+            watched[sq] = 0;
+            watchers[sq] = 0;
+        }
+        for (long bb = board.occupied(); bb != 0; bb &= bb - 1) {
+            refresh(board, Long.numberOfTrailingZeros(bb));
+        }
+        MoveGenerator.generateLegal(board, out);
+    }
+
+    // Brings the sets up to date after the move was made or unmade on the board and writes the legal moves
+    public void update(Board board, int move, MoveList out) {
+        int flags = Move.flags(move);
+        if (Move.isPromotion(move) || flags == Move.CASTLE_KING || flags == Move.CASTLE_QUEEN ||
+                flags == Move.EN_PASSANT) {
+            rebuild(board, out);
+            return;
+        }
+
+        int from = Move.from(move);
+        int to = Move.to(move);
+        for (long bb = watchers[from] | watchers[to] | (1L << from) | (1L << to); bb != 0; bb &= bb - 1) {
+            refresh(board, Long.numberOfTrailingZeros(bb));
+        }
+        writeLegal(board, out);
+
+        if (verify) {
+            MoveGenerator.generateLegal(board, check);
+            if (!sameMoves(out, check)) {
+                throw new IllegalStateException("Incremental moves differ after " + Move.toString(move) + " in " +
+                        Fen.export(board) + ": " + describe(out) + " vs " + describe(check));
+            }
+        }
+    }
+
+    private void refresh(Board board, int sq) {
+        for (long bb = watched[sq]; bb != 0; bb &= bb - 1) {
+            watchers[Long.numberOfTrailingZeros(bb)] &= ~(1L << sq);
+        }
+        if (board.isEmpty(sq)) {
+            targets[sq] = 0;
+            watched[sq] = 0;
+            return;
+        }
+
+        boolean white = board.isWhite(sq);
+        PieceType type = board.typeAt(sq);
+        long watch;
+        long reach;
+        if (type == PieceType.PAWN) {
+            watch = Attacks.pawn(sq, white);
+            reach = watch & board.colour(!white);
+            int oneMove = white ? sq + 8 : sq - 8;
+            if (oneMove >= 0 && oneMove < 64) {
+                watch |= 1L << oneMove;
+                boolean open = board.isEmpty(oneMove);
+                if (open) reach |= 1L << oneMove;
+                if ((sq >>> 3) == (white ? 1 : 6)) {
+                    int twoMove = white ? sq + 16 : sq - 16;
+                    watch |= 1L << twoMove;
+                    if (open && board.isEmpty(twoMove)) reach |= 1L << twoMove;
+                }
+            }
+        }
+        else {
+            watch = Attacks.forPiece(type, sq, board.occupied());
+            reach = watch & ~board.colour(white);
+        }
+        targets[sq] = reach;
+        watched[sq] = watch;
+        for (long bb = watch; bb != 0; bb &= bb - 1) {
+            watchers[Long.numberOfTrailingZeros(bb)] |= 1L << sq;
+        }
+    }
+
+    // Out of check and with no en passant to try, only the king's own steps and pins need the live board
+    private void writeLegal(Board board, MoveList out) {
+        boolean white = board.whiteToMove;
+        long kingBit = board.pieces(PieceType.KING, white);
+        int king = Long.numberOfTrailingZeros(kingBit);
+        if (kingBit == 0 || board.epSquare != Board.NO_SQUARE || board.inCheck(white)) {
+            MoveGenerator.generateLegal(board, out);
+            return;
+        }
+
+        out.clear();
+        long us = board.colour(white);
+        long occupied = board.occupied();
+        for (long bb = targets[king]; bb != 0; bb &= bb - 1) {
+            int to = Long.numberOfTrailingZeros(bb);
+            if (board.attackersTo(to, !white, occupied ^ kingBit) == 0) MoveGenerator.addMove(board, king, to, out);
+        }
+
+        long pinned = MoveGenerator.pinnedPieces(board, white, king, occupied);
+        long pawns = board.pieces(PieceType.PAWN, white);
+        for (long bb = us & ~kingBit; bb != 0; bb &= bb - 1) {
+            int sq = Long.numberOfTrailingZeros(bb);
+            long reach = ((pinned >>> sq) & 1) != 0 ? targets[sq] & Attacks.line(king, sq) : targets[sq];
+            boolean pawn = ((pawns >>> sq) & 1) != 0;
+            for (; reach != 0; reach &= reach - 1) {
+                int to = Long.numberOfTrailingZeros(reach);
+                if (!pawn) {
+                    MoveGenerator.addMove(board, sq, to, out);
+                }
+                else if ((to & 7) != (sq & 7)) {
+                    MoveGenerator.addPawnMove(sq, to, Move.CAPTURE, out);
+                }
+                else if (Math.abs(to - sq) == 16) {
+                    out.add(Move.encode(sq, to, Move.DOUBLE_PUSH));
+                }
+                else {
+                    MoveGenerator.addPawnMove(sq, to, Move.QUIET, out);
+                }
+            }
+        }
+
+        MoveGenerator.addCastles(board, white, king, out);
+    }
+
+    private static boolean sameMoves(MoveList a, MoveList b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (!b.contains(a.get(i))) return false;
+        }
+        return true;
+    }
+
+    private static String describe(MoveList moves) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < moves.size(); i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(Move.toString(moves.get(i)));
+        }
+        return sb.toString();
+    }
+
+}
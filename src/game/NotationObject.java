@@ -5,36 +5,69 @@ import java.util.ArrayList;
 enum SameState {NONE, LETTER, NUM, BOTH}
 enum SpecialNotation {CAPTURE, CASTLE_KING, CASTLE_QUEEN, CHECKMATE, DRAW, PAWN_PROMO, CHECK, EN_PASSANT}
 
+// Built on demand from the position before a move, which is left as it was found; nothing here is stored
+// with the game, whose record keeps only the packed moves
 public class NotationObject {
 
-    private ArrayList<Piece> pieces;
+    private SameState state;
     public PieceType type;
     public boolean white;
     public Cell oldCell;
     public Cell moveTo;
+    public PieceType promotion = PieceType.NONE;
     public ArrayList<SpecialNotation> extraNotationList;
 
-    public NotationObject(ArrayList<Piece> pieces,
-                          Piece piece) {
-        this.pieces = pieces;
-        this.type = piece.type;
-        this.white = piece.white;
-        this.oldCell = piece.cell;
+    public NotationObject(Board board,
+                          MoveList legalMoves,
+                          int move) {
+        int from = Move.from(move);
+        this.type = board.typeAt(from);
+        this.white = board.isWhite(from);
+        this.oldCell = Board.cell(from);
+        this.moveTo = Board.cell(Move.to(move));
         this.extraNotationList = new ArrayList<>();
+        this.state = getConflictingPieces(board, legalMoves, move);
+
+        int flags = Move.flags(move);
+        if (Move.isCapture(move)) {
+            if (flags == Move.EN_PASSANT) extraNotationList.add(SpecialNotation.EN_PASSANT);
+            extraNotationList.add(SpecialNotation.CAPTURE);
+        }
+        if (Move.isPromotion(move)) {
+            promotion = Move.promotion(move);
+            extraNotationList.add(SpecialNotation.PAWN_PROMO);
+        }
+        else if (flags == Move.CASTLE_KING || flags == Move.CASTLE_QUEEN) {
+            extraNotationList.add(flags == Move.CASTLE_KING ? SpecialNotation.CASTLE_KING : SpecialNotation.CASTLE_QUEEN);
+        }
+
+        board.makeMove(move);
+        if (board.inCheck(board.whiteToMove)) {
+            extraNotationList.add(MoveGenerator.hasAnyLegalMove(board) ? SpecialNotation.CHECK : SpecialNotation.CHECKMATE);
+        }
+        board.unmakeMove();
     }
 
     public String getString() {
-        SameState state = getConflictingPieces();
+        return buildString(false);
+    }
+
+    // Standard SAN as PGN expects it: letter O castles, check and mate marks, no e.p. suffix
+    public String getSan() {
+        return buildString(true);
+    }
+
+    private String buildString(boolean standard) {
         StringBuilder sb = new StringBuilder();
         if (getExtra(SpecialNotation.CASTLE_KING)) {
-            sb.append("0-0");
+            sb.append(standard ? "O-O" : "0-0");
         }
         else if (getExtra(SpecialNotation.CASTLE_QUEEN)) {
-            sb.append("0-0-0");
+            sb.append(standard ? "O-O-O" : "0-0-0");
         }
         else {
             if (type == PieceType.PAWN) {
-                if (getExtra(SpecialNotation.CAPTURE)) sb.append(moveTo.col);
+                if (getExtra(SpecialNotation.CAPTURE)) sb.append(oldCell.col);
             }
             else {
                 sb.append(Game.pieceTypeToLetter(type));
@@ -44,38 +77,36 @@ public class NotationObject {
             if (getExtra(SpecialNotation.CAPTURE)) sb.append("x");
             sb.append(moveTo.col);
             sb.append(moveTo.row);
-            if (getExtra(SpecialNotation.EN_PASSANT)) sb.append("e.p.");
+            if (getExtra(SpecialNotation.PAWN_PROMO)) sb.append("=").append(Game.pieceTypeToLetter(promotion));
+            if (getExtra(SpecialNotation.EN_PASSANT) && !standard) sb.append("e.p.");
         }
+        if (standard && getExtra(SpecialNotation.CHECKMATE)) sb.append('#');
+        if (standard && getExtra(SpecialNotation.CHECK)) sb.append('+');
 
         return sb.toString();
     }
 
-    private SameState getConflictingPieces() {
-        SameState state = SameState.NONE;
-        for (Piece piece : pieces) {
-            if (piece.type == type && !piece.cell.compare(moveTo)) {
-                for (Cell move : piece.moves) {
-                    if (moveTo.compare(move)) state = getSameState(state, piece.cell);
-                }
+    // Standard disambiguation: the file if it is unique among the pieces that could also move there,
+    // otherwise the rank if that is unique, otherwise both
+    private SameState getConflictingPieces(Board board, MoveList legalMoves, int move) {
+        boolean conflict = false;
+        boolean sameCol = false;
+        boolean sameRow = false;
+        int code = board.codeAt(Move.from(move));
+        for (int i = 0; i < legalMoves.size(); i++) {
+            int other = legalMoves.get(i);
+            if (Move.to(other) == Move.to(move) && Move.from(other) != Move.from(move) &&
+                    board.codeAt(Move.from(other)) == code) {
+                Cell conflictCell = Board.cell(Move.from(other));
+                conflict = true;
+                sameCol |= oldCell.col == conflictCell.col;
+                sameRow |= oldCell.row == conflictCell.row;
             }
         }
-        return state;
-    }
-
-    private SameState getSameState(SameState state, Cell conflictCell) {
-        if (state == SameState.NONE && oldCell.col != conflictCell.col) {
-            return SameState.LETTER;
-        }
-        else if (state == SameState.NONE && oldCell.row != conflictCell.row) {
-            return SameState.NUM;
-        }
-        else if (state == SameState.LETTER && oldCell.row != conflictCell.row) {
-            return SameState.BOTH;
-        }
-        else if (state == SameState.NUM && oldCell.col != conflictCell.col) {
-            return SameState.BOTH;
-        }
-        return SameState.NONE;
+        if (!conflict) return SameState.NONE;
+        if (!sameCol) return SameState.LETTER;
+        if (!sameRow) return SameState.NUM;
+        return SameState.BOTH;
     }
 
     private boolean getExtra(SpecialNotation extra) {
@@ -0,0 +1,111 @@
+package game;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ParallelSearch {
+
+    private final TranspositionTable table;
+    private final int threads;
+    private final ExecutorService helpers;
+    private final Search[] searches;
+    private final Future<?>[] futures;
+    private Search.Listener listener;
+    private boolean pondering;
+    private boolean stopRequested;
+
+    public ParallelSearch(TranspositionTable table, int threads) {
+        this.table = table;
+        this.threads = Math.max(1, threads);
+        this.searches = new Search[this.threads];
+        this.futures = new Future<?>[this.threads];
+        this.helpers = this.threads == 1 ? null : Executors.newFixedThreadPool(this.threads - 1, r -> {
+            Thread thread = new Thread(r, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // Lazy SMP: every thread searches the same root on its own board, sharing only the transposition
+    // table. The main search runs on the calling thread and its result is the one returned. With one
+    // thread this is exactly a plain Search.
+    public int think(Board board, long softMillis, long hardMillis, int maxDepth) {
+        // Guarded so a stop or ponderhit from another thread reaches either the flags or the new searches
+        synchronized (this) {
+            for (int i = 0; i < threads; i++) {
+                searches[i] = new Search(new Board(board), table);
+                searches[i].setHelper(i);
+                searches[i].setPondering(pondering);
+                if (stopRequested) searches[i].stop();
+            }
+            searches[0].setListener(listener);
+        }
+        for (int i = 1; i < threads; i++) {
+            Search helper = searches[i];
+            futures[i] = helpers.submit(() -> helper.think(hardMillis, hardMillis, maxDepth));
+        }
+
+        int move = searches[0].think(softMillis, hardMillis, maxDepth);
+
+        for (int i = 1; i < threads; i++) {
+            searches[i].stop();
+        }
+        for (int i = 1; i < threads; i++) {
+            try {
+                futures[i].get();
+            }
+            catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        return move;
+    }
+
+    public void setListener(Search.Listener listener) {
+        this.listener = listener;
+    }
+
+    // Called before handing think to another thread, so a stop or ponderhit that beats the search to its
+    // start still applies; with ponder set the clock doesn't run until ponderhit
+    public synchronized void prepare(boolean ponder) {
+        pondering = ponder;
+        stopRequested = false;
+    }
+
+    public synchronized void ponderhit() {
+        pondering = false;
+        for (Search search : searches) {
+            if (search != null) search.ponderhit();
+        }
+    }
+
+    public synchronized void stop() {
+        stopRequested = true;
+        for (Search search : searches) {
+            if (search != null) search.stop();
+        }
+    }
+
+    public Search getMainSearch() {
+        return searches[0];
+    }
+
+    public long getNodes() {
+        long nodes = 0;
+        for (Search search : searches) {
+            if (search != null) nodes += search.getNodes();
+        }
+        return nodes;
+    }
+
+    public void shutdown() {
+        if (helpers != null) helpers.shutdownNow();
+    }
+
+}
@@ -0,0 +1,98 @@
+package game;
+
+import java.io.IOException;
+
+public class Perft {
+
+    // Standard reference positions with known leaf counts
+    private static final String[] REFERENCE_FENS = {
+            Fen.START,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"};
+    private static final int[] REFERENCE_DEPTHS = {5, 4, 5, 4, 4, 4};
+    private static final long[] REFERENCE_NODES = {4865609, 4085603, 674624, 422333, 2103487, 3894594};
+
+    private static final int MAX_DEPTH = 32;
+
+    private final Board board;
+    private final MoveList[] moveLists = MoveList.perPly(MAX_DEPTH);
+
+    public Perft(Board board) {
+        this.board = board;
+    }
+
+    public long count(int depth) {
+        return count(depth, 0);
+    }
+
+    private long count(int depth, int ply) {
+        if (depth == 0) return 1;
+        MoveList moves = moveLists[ply];
+        MoveGenerator.generateLegal(board, moves);
+        if (depth == 1) return moves.size();
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            nodes += count(depth - 1, ply + 1);
+            board.unmakeMove();
+        }
+        return nodes;
+    }
+
+    public long divide(int depth) {
+        MoveList moves = moveLists[0];
+        MoveGenerator.generateLegal(board, moves);
+        long total = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            board.makeMove(move);
+            long nodes = count(depth - 1, 1);
+            board.unmakeMove();
+            System.out.println(Move.toString(move) + ": " + nodes);
+            total += nodes;
+        }
+        return total;
+    }
+
+    public static boolean verify() {
+        boolean ok = true;
+        for (int i = 0; i < REFERENCE_FENS.length; i++) {
+            Board board = new Board();
+            Fen.load(board, REFERENCE_FENS[i]);
+            long start = System.nanoTime();
+            long nodes = new Perft(board).count(REFERENCE_DEPTHS[i]);
+            long elapsed = System.nanoTime() - start;
+            boolean match = nodes == REFERENCE_NODES[i];
+            ok &= match;
+            System.out.println(String.format("%s depth %d: %d nodes (expected %d) %s, %.0f nodes/s",
+                    REFERENCE_FENS[i], REFERENCE_DEPTHS[i], nodes, REFERENCE_NODES[i],
+                    match ? "OK" : "FAIL", nodes * 1e9 / elapsed));
+        }
+        return ok;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args[0].equals("--verify")) {
+            if (!verify()) System.exit(1);
+            return;
+        }
+        if (args.length < 2) {
+            System.out.println("usage: Perft [--verify] | <fen or board file> <depth> [--divide]");
+            return;
+        }
+
+        Board board = new Board();
+        Game.loadPosition(board, args[0]);
+        Perft perft = new Perft(board);
+        int depth = Integer.parseInt(args[1]);
+        long start = System.nanoTime();
+        long nodes = args.length > 2 && args[2].equals("--divide") ? perft.divide(depth) : perft.count(depth);
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%d nodes in %.3f s, %.0f nodes/s", nodes, elapsed / 1e9, nodes * 1e9 / elapsed));
+    }
+
+}
@@ -0,0 +1,340 @@
+package game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Reads PGN a byte at a time out of a fixed buffer and replays each game on a Game, so a file of any size
+// is processed without holding more than one token of it in memory
+public class PgnReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_TOKEN = 256;
+
+    interface Listener {
+        default void tag(String name, String value) {}
+
+        // Called at most once per game; the rest of that game's moves are skipped
+        default void illegal(String reason) {}
+
+        default void endGame(String result) {}
+    }
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final byte[] token = new byte[MAX_TOKEN];
+    private int tokenLength;
+    private int pending = -1;
+    private long remaining = Long.MAX_VALUE;
+    private long position;
+    private long gameOffset;
+    private long games;
+
+    // Per-game state
+    private String fen;
+    private boolean started;
+    private boolean failed;
+
+    public PgnReader(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    public PgnReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.limit(0);
+    }
+
+    // Reads only the games in [start, end) of the file; both ends should fall on game boundaries
+    public PgnReader(FileChannel channel, long start, long end) throws IOException {
+        this(channel);
+        channel.position(start);
+        position = start;
+        remaining = end - start;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    // Byte offset in the input where the game last read began
+    public long getGameOffset() {
+        return gameOffset;
+    }
+
+    // Replays the next game on the given Game, which is left at its final position; false once the input is exhausted
+    public boolean nextGame(Game game, Listener listener) throws IOException {
+        fen = null;
+        started = false;
+        failed = false;
+        boolean seen = false;
+        boolean inMovetext = false;
+
+        int c;
+        while ((c = read()) >= 0) {
+            if (c <= ' ') continue;
+            if (!seen) gameOffset = position - 1;
+            seen = true;
+            switch (c) {
+                case '[':
+                    if (inMovetext) {
+                        // A tag after moves belongs to the next game, which had no result token between
+                        unread(c);
+                        return finish(game, listener, "*");
+                    }
+                    readTag(listener);
+                    break;
+                case '{':
+                    skipPast('}');
+                    break;
+                case ';':
+                case '%':
+                    skipPast('\n');
+                    break;
+                case '(':
+                    skipVariation();
+                    break;
+                case '$':
+                    readToken(c);
+                    break;
+                default:
+                    inMovetext = true;
+                    readToken(c);
+                    if (isResult()) return finish(game, listener, new String(token, 0, tokenLength, StandardCharsets.US_ASCII));
+                    playToken(game, listener);
+            }
+        }
+        return seen && finish(game, listener, "*");
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean finish(Game game, Listener listener, String result) {
+        start(game, listener);
+        games++;
+        listener.endGame(result);
+        return true;
+    }
+
+    // The position is set up when the movetext begins, once any FEN tag has been read
+    private void start(Game game, Listener listener) {
+        if (started) return;
+        started = true;
+        try {
+            game.loadFen(fen != null ? fen : Fen.START);
+        }
+        catch (IllegalArgumentException e) {
+            game.loadFen(Fen.START);
+            failed = true;
+            listener.illegal(e.getMessage());
+        }
+    }
+
+    private void playToken(Game game, Listener listener) {
+        // Move numbers may be glued to the move that follows them, as in 12.Nf3 or 12...Nf3
+        int start = 0;
+        while (start < tokenLength && token[start] >= '0' && token[start] <= '9') start++;
+        if (start < tokenLength && token[start] == '.') {
+            while (start < tokenLength && token[start] == '.') start++;
+        }
+        else if (start < tokenLength) {
+            start = 0;
+        }
+        // Nothing but a move number, or a detached annotation
+        if (start == tokenLength || token[start] == '!' || token[start] == '?') return;
+
+        start(game, listener);
+        if (failed) return;
+        int move = resolve(game, start);
+        if (move == Move.NONE || !game.play(move)) {
+            failed = true;
+            int ply = game.getScore().size();
+            listener.illegal("Illegal move " + (ply / 2 + 1) + (ply % 2 == 0 ? ". " : "... ") +
+                    new String(token, start, tokenLength - start, StandardCharsets.US_ASCII));
+        }
+    }
+
+    // Matches a SAN token against the legal moves; also accepts zero castles and long algebraic like Ng1-f3
+    private int resolve(Game game, int start) {
+        int end = tokenLength;
+        while (end > start && (token[end - 1] == '+' || token[end - 1] == '#' ||
+                token[end - 1] == '!' || token[end - 1] == '?')) end--;
+        if (end - start > 4 && token[end - 4] == 'e' && token[end - 3] == '.' &&
+                token[end - 2] == 'p' && token[end - 1] == '.') end -= 4;
+
+        MoveList moves = game.getLegalMoves();
+        if (isCastle(start)) {
+            int flag = end - start == 3 ? Move.CASTLE_KING : end - start == 5 ? Move.CASTLE_QUEEN : -1;
+            for (int i = 0; i < moves.size(); i++) {
+                if (Move.flags(moves.get(i)) == flag) return moves.get(i);
+            }
+            return Move.NONE;
+        }
+
+        PieceType type = PieceType.PAWN;
+        if (start < end && isPieceLetter(token[start])) type = Game.letterToPieceType((char) token[start++]);
+        PieceType promotion = PieceType.NONE;
+        if (type == PieceType.PAWN && end - start >= 3 && isPieceLetter(token[end - 1])) {
+            promotion = Game.letterToPieceType((char) token[end - 1]);
+            end--;
+            if (token[end - 1] == '=') end--;
+        }
+        if (end - start < 2) return Move.NONE;
+        int toFile = token[end - 2] - 'a';
+        int toRank = token[end - 1] - '1';
+        if (toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) return Move.NONE;
+        int to = toRank * 8 + toFile;
+
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = start; i < end - 2; i++) {
+            byte b = token[i];
+            if (b >= 'a' && b <= 'h') {
+                fromFile = b - 'a';
+            }
+            else if (b >= '1' && b <= '8') {
+                fromRank = b - '1';
+            }
+            else if (b != 'x' && b != '-' && b != ':') {
+                return Move.NONE;
+            }
+        }
+
+        Board board = game.getBoard();
+        int found = Move.NONE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int from = Move.from(move);
+            if (Move.to(move) != to || board.typeAt(from) != type) continue;
+            if ((fromFile >= 0 && from % 8 != fromFile) || (fromRank >= 0 && from / 8 != fromRank)) continue;
+            if ((Move.isPromotion(move) ? Move.promotion(move) : PieceType.NONE) != promotion) continue;
+            if (found != Move.NONE) return Move.NONE;
+            found = move;
+        }
+        return found;
+    }
+
+    private boolean isCastle(int start) {
+        byte castle = token[start];
+        if (castle != 'O' && castle != '0') return false;
+        int i = start;
+        while (i + 1 < tokenLength && token[i + 1] == '-' && i + 2 < tokenLength && token[i + 2] == castle) i += 2;
+        return i > start;
+    }
+
+    private boolean isResult() {
+        if (tokenLength == 1) return token[0] == '*';
+        return matches("1-0") || matches("0-1") || matches("1/2-1/2");
+    }
+
+    private boolean matches(String text) {
+        if (tokenLength != text.length()) return false;
+        for (int i = 0; i < tokenLength; i++) {
+            if (token[i] != text.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isPieceLetter(byte b) {
+        return b == 'K' || b == 'Q' || b == 'R' || b == 'B' || b == 'N';
+    }
+
+    private void readTag(Listener listener) throws IOException {
+        int c;
+        while ((c = read()) >= 0 && c <= ' ') {}
+        tokenLength = 0;
+        while (c > ' ' && c != '"' && c != ']') {
+            append(c);
+            c = read();
+        }
+        String name = new String(token, 0, tokenLength, StandardCharsets.US_ASCII);
+
+        while (c >= 0 && c != '"' && c != ']') c = read();
+        tokenLength = 0;
+        if (c == '"') {
+            while ((c = read()) >= 0 && c != '"') {
+                if (c == '\\') c = read();
+                append(c);
+            }
+            skipPast(']');
+        }
+        String value = new String(token, 0, tokenLength, StandardCharsets.UTF_8);
+
+        if (name.equals("FEN")) fen = value;
+        listener.tag(name, value);
+    }
+
+    private void readToken(int c) throws IOException {
+        tokenLength = 0;
+        while (c > ' ' && c != '{' && c != '}' && c != '(' && c != ')' && c != '[' && c != ']' && c != ';') {
+            append(c);
+            c = read();
+        }
+        if (c >= 0) unread(c);
+    }
+
+    private void unread(int c) {
+        pending = c;
+        position--;
+    }
+
+    private void append(int c) {
+        if (tokenLength < MAX_TOKEN) token[tokenLength++] = (byte) c;
+    }
+
+    private void skipPast(int end) throws IOException {
+        int c;
+        while ((c = read()) >= 0 && c != end) {}
+    }
+
+    // Variations are not replayed; they may nest and may hold comments with brackets in them
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        int c;
+        while (depth > 0 && (c = read()) >= 0) {
+            if (c == '(') {
+                depth++;
+            }
+            else if (c == ')') {
+                depth--;
+            }
+            else if (c == '{') {
+                skipPast('}');
+            }
+            else if (c == ';') {
+                skipPast('\n');
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pending >= 0) {
+            int c = pending;
+            pending = -1;
+            position++;
+            return c;
+        }
+        if (!buffer.hasRemaining()) {
+            if (remaining == 0) return -1;
+            buffer.clear();
+            if (remaining < buffer.capacity()) buffer.limit((int) remaining);
+            int n;
+            do {
+                n = channel.read(buffer);
+            } while (n == 0);
+            buffer.flip();
+            if (n < 0) return -1;
+            remaining -= n;
+        }
+        position++;
+        return buffer.get() & 0xff;
+    }
+
+}
@@ -0,0 +1,89 @@
+package game;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+public class PgnWriter {
+
+    private static final String[] ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+    private static final String[] ROSTER_DEFAULTS = {"?", "?", "????.??.??", "?", "?", "?", null};
+    private static final int LINE_LENGTH = 79;
+
+    private final Writer out;
+
+    public PgnWriter(Writer out) {
+        this.out = out;
+    }
+
+    // Writes the game's score with the seven standard tags first, filling in any the caller left out
+    public void write(Game game, Map<String, String> tags) throws IOException {
+        String result = tags.getOrDefault("Result", game.getResult());
+        for (int i = 0; i < ROSTER.length; i++) {
+            String value = ROSTER[i].equals("Result") ? result : tags.getOrDefault(ROSTER[i], ROSTER_DEFAULTS[i]);
+            writeTag(ROSTER[i], value);
+        }
+        String startFen = game.getStartFen();
+        if (!startFen.equals(Fen.START)) {
+            writeTag("SetUp", "1");
+            writeTag("FEN", startFen);
+        }
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!isRoster(tag.getKey()) && !tag.getKey().equals("SetUp") && !tag.getKey().equals("FEN")) {
+                writeTag(tag.getKey(), tag.getValue());
+            }
+        }
+        out.write('\n');
+
+        Board start = new Board();
+        Fen.load(start, startFen);
+        boolean white = start.whiteToMove;
+        int number = start.fullmoveNumber;
+        StringBuilder line = new StringBuilder();
+        String[] notation = game.getNotation(true);
+        for (int i = 0; i < notation.length; i++) {
+            String san = notation[i];
+            if (white) {
+                append(line, number + ". " + san);
+            }
+            else {
+                append(line, i == 0 ? number + "... " + san : san);
+                number++;
+            }
+            white = !white;
+        }
+        append(line, result);
+        out.write(line.toString());
+        out.write("\n\n");
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void append(StringBuilder line, String text) throws IOException {
+        if (line.length() > 0 && line.length() + 1 + text.length() > LINE_LENGTH) {
+            out.write(line.toString());
+            out.write('\n');
+            line.setLength(0);
+        }
+        if (line.length() > 0) line.append(' ');
+        line.append(text);
+    }
+
+    private void writeTag(String name, String value) throws IOException {
+        out.write('[');
+        out.write(name);
+        out.write(" \"");
+        out.write(value.replace("\\", "\\\\").replace("\"", "\\\""));
+        out.write("\"]\n");
+    }
+
+    private static boolean isRoster(String name) {
+        for (String tag : ROSTER) {
+            if (tag.equals(name)) return true;
+        }
+        return false;
+    }
+
+}
@@ -10,7 +10,6 @@ public class Piece {
     public boolean white;
     public Cell cell;
     public ArrayList<Cell> moves = new ArrayList<>();
-    public boolean tempDelete = false;
 
     public Piece(PieceType type, boolean white, Cell cell) {
         this.type = type;
@@ -0,0 +1,152 @@
+package game;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// What the rules say about a position, kept by Zobrist key so any number of games can share it: the legal
+// moves, whether it is mate or stalemate, and the notation of each move once somebody has asked for it.
+// The key is split over segments, each a small LRU map under its own lock, and once a segment is full its
+// least recently used position makes room for the next.
+public class PositionCache {
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    // Shared between threads; the notation slots are filled in lazily, and two threads racing to fill one
+    // just write the same string
+    static class Entry {
+        final short[] moves;
+        final GameStatus status;
+        final String[] san;
+        final String[] strings;
+
+        Entry(MoveList legalMoves, GameStatus status) {
+            moves = new short[legalMoves.size()];
+            for (int i = 0; i < moves.length; i++) {
+                moves[i] = (short) legalMoves.get(i);
+            }
+            this.status = status;
+            san = new String[moves.length];
+            strings = new String[moves.length];
+        }
+
+        void copyMoves(MoveList out) {
+            out.clear();
+            for (short move : moves) {
+                out.add(move & 0xffff);
+            }
+        }
+
+        int indexOf(int move) {
+            for (int i = 0; i < moves.length; i++) {
+                if ((moves[i] & 0xffff) == move) return i;
+            }
+            return -1;
+        }
+    }
+
+    private static class Segment extends LinkedHashMap<Long, PositionCache.Entry> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        private final LongAdder evictions;
+
+        Segment(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, PositionCache.Entry> eldest) {
+            if (size() <= capacity) return false;
+            evictions.increment();
+            return true;
+        }
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public PositionCache(int capacity) {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(1, capacity / SEGMENTS), evictions);
+        }
+    }
+
+    public Entry get(long key) {
+        Segment segment = segment(key);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+        }
+        if (entry != null) {
+            hits.increment();
+        }
+        else {
+            misses.increment();
+        }
+        return entry;
+    }
+
+    public Entry put(long key, MoveList legalMoves, GameStatus status) {
+        Entry entry = new Entry(legalMoves, status);
+        Segment segment = segment(key);
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+        return entry;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public double hitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    // Both halves of the key folded and multiplied by the golden ratio, taking the top bits of the product, so
+    // keys spread evenly over the segments whichever of their bits happen to vary
+    private Segment segment(long key) {
+        return segments[((int) (key ^ key >>> 32) * 0x9e3779b9) >>> (32 - SEGMENT_BITS)];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d positions, %d hits, %d misses (%.1f%%), %d evicted", size(), getHits(),
+                getMisses(), hitRate() * 100, getEvictions());
+    }
+
+}
@@ -0,0 +1,294 @@
+package game;
+
+public class Search {
+
+    public static final int INFINITY = 32000;
+    public static final int MATE = 30000;
+    public static final int MAX_PLY = 64;
+
+    private static final int ASPIRATION_WINDOW = 40;
+    private static final int TIME_CHECK_NODES = 1023;
+
+    interface Listener {
+        // Called by the main search after each completed iteration
+        void iteration(int depth, int score, int move);
+    }
+
+    private final Board board;
+    private final TranspositionTable table;
+    private final Evaluator evaluator = new Evaluator();
+    private final MoveList[] moveLists = MoveList.perPly(MAX_PLY + 1);
+    private final int[][] moveScores = new int[MAX_PLY + 1][MoveList.CAPACITY];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+
+    private int helperId;
+    private Listener listener;
+    private long softMillis;
+    private long hardMillis;
+    // Written by ponderhit from another thread while the search runs
+    private volatile long softDeadline;
+    private volatile long hardDeadline;
+    private volatile boolean pondering;
+    private volatile boolean stopped;
+    private long nodes;
+    private int rootBest;
+    private int bestMove;
+    private int bestScore;
+    private int completedDepth;
+
+    public Search(Board board, TranspositionTable table) {
+        this.board = board;
+        this.table = table;
+    }
+
+    // Helpers share the table with the main search and start on alternating depths so they spread out
+    public void setHelper(int helperId) {
+        this.helperId = helperId;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // While pondering the deadlines are ignored; they only start to run from ponderhit
+    public void setPondering(boolean pondering) {
+        this.pondering = pondering;
+    }
+
+    public void ponderhit() {
+        long now = System.nanoTime();
+        softDeadline = now + softMillis * 1_000_000;
+        hardDeadline = now + hardMillis * 1_000_000;
+        pondering = false;
+    }
+
+    public int think(long millis) {
+        return think(millis / 2, millis, MAX_PLY);
+    }
+
+    // The soft limit stops new iterations from starting, the hard limit aborts the one in progress
+    public int think(long softMillis, long hardMillis, int maxDepth) {
+        long start = System.nanoTime();
+        this.softMillis = softMillis;
+        this.hardMillis = hardMillis;
+        softDeadline = start + softMillis * 1_000_000;
+        hardDeadline = start + hardMillis * 1_000_000;
+        nodes = 0;
+        completedDepth = 0;
+        bestScore = 0;
+        bestMove = Move.NONE;
+        if (helperId == 0) table.newSearch();
+
+        MoveList rootMoves = moveLists[0];
+        MoveGenerator.generateLegal(board, rootMoves);
+        if (rootMoves.size() == 0) return Move.NONE;
+        bestMove = rootMoves.get(0);
+
+        int score = 0;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            if (helperId % 2 == 1 && depth % 2 == 1 && depth > 1 && depth < maxDepth) continue;
+            score = aspiration(depth, score);
+            if (stopped) break;
+            bestMove = rootBest;
+            bestScore = score;
+            completedDepth = depth;
+            if (listener != null) listener.iteration(depth, score, bestMove);
+            if ((!pondering && System.nanoTime() >= softDeadline) || Math.abs(score) >= MATE - MAX_PLY) break;
+        }
+        return bestMove;
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    public int getBestScore() {
+        return bestScore;
+    }
+
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    private int aspiration(int depth, int previous) {
+        if (depth < 4) return search(depth, 0, -INFINITY, INFINITY);
+
+        int delta = ASPIRATION_WINDOW;
+        int alpha = Math.max(previous - delta, -INFINITY);
+        int beta = Math.min(previous + delta, INFINITY);
+        while (true) {
+            int score = search(depth, 0, alpha, beta);
+            if (stopped) return score;
+            if (score <= alpha) {
+                alpha = Math.max(score - delta, -INFINITY);
+            }
+            else if (score >= beta) {
+                beta = Math.min(score + delta, INFINITY);
+            }
+            else {
+                return score;
+            }
+            delta *= 2;
+        }
+    }
+
+    private int search(int depth, int ply, int alpha, int beta) {
+        boolean inCheck = board.inCheck(board.whiteToMove);
+        if (inCheck) depth++;
+        if (depth <= 0) return quiescence(ply, alpha, beta);
+        if (countNode()) return 0;
+        if (ply >= MAX_PLY) return evaluator.evaluate(board);
+        // Inside the tree a single repetition is enough to call the line a draw
+        if (ply > 0 && board.isDraw()) return 0;
+
+        long key = board.key();
+        long entry = table.probe(key);
+        int ttMove = Move.NONE;
+        if (entry != TranspositionTable.NO_ENTRY) {
+            ttMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT ||
+                        (bound == TranspositionTable.LOWER && score >= beta) ||
+                        (bound == TranspositionTable.UPPER && score <= alpha)) return score;
+            }
+        }
+
+        MoveList moves = moveLists[ply];
+        MoveGenerator.generateLegal(board, moves);
+        if (moves.size() == 0) return inCheck ? -MATE + ply : 0;
+        scoreMoves(moves, ply, ttMove);
+
+        int best = -INFINITY;
+        int bestHere = Move.NONE;
+        int bound = TranspositionTable.UPPER;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(moves, ply, i);
+            board.makeMove(move);
+            int score = -search(depth - 1, ply + 1, -beta, -alpha);
+            board.unmakeMove();
+            if (stopped) return 0;
+
+            if (score > best) {
+                best = score;
+                bestHere = move;
+                if (score > alpha) {
+                    alpha = score;
+                    bound = TranspositionTable.EXACT;
+                    if (ply == 0) rootBest = move;
+                    if (alpha >= beta) {
+                        bound = TranspositionTable.LOWER;
+                        if (!Move.isCapture(move) && killers[ply][0] != move) {
+                            killers[ply][1] = killers[ply][0];
+                            killers[ply][0] = move;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        table.store(key, bestHere, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    private int quiescence(int ply, int alpha, int beta) {
+        if (countNode()) return 0;
+        int standPat = evaluator.evaluate(board);
+        if (ply >= MAX_PLY || standPat >= beta) return standPat;
+        if (standPat > alpha) alpha = standPat;
+
+        MoveList moves = moveLists[ply];
+        MoveGenerator.generateLegal(board, moves);
+        int captures = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (Move.isCapture(move) || Move.isPromotion(move)) moves.set(captures++, move);
+        }
+        if (moves.size() == 0) return board.inCheck(board.whiteToMove) ? -MATE + ply : 0;
+        moves.truncate(captures);
+        scoreMoves(moves, ply, Move.NONE);
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(moves, ply, i);
+            board.makeMove(move);
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            board.unmakeMove();
+            if (stopped) return 0;
+            if (score >= beta) return score;
+            if (score > alpha) alpha = score;
+        }
+        return alpha;
+    }
+
+    private boolean countNode() {
+        if ((++nodes & TIME_CHECK_NODES) == 0 && !pondering && System.nanoTime() >= hardDeadline) stopped = true;
+        return stopped;
+    }
+
+    // Hash move first, then captures by most valuable victim and least valuable attacker, then killers
+    private void scoreMoves(MoveList moves, int ply, int ttMove) {
+        int[] scores = moveScores[ply];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (move == ttMove) {
+                scores[i] = 1_000_000;
+            }
+            else if (Move.isCapture(move)) {
+                int victim = Move.flags(move) == Move.EN_PASSANT ? PieceType.PAWN.ordinal() :
+                        board.codeAt(Move.to(move)) & 7;
+                scores[i] = 100_000 + Evaluator.VALUES[victim] * 10 - Evaluator.VALUES[board.codeAt(Move.from(move)) & 7] / 10;
+            }
+            else if (Move.isPromotion(move)) {
+                scores[i] = 90_000 + Evaluator.VALUES[Move.promotion(move).ordinal()];
+            }
+            else if (move == killers[ply][0]) {
+                scores[i] = 80_000;
+            }
+            else if (move == killers[ply][1]) {
+                scores[i] = 70_000;
+            }
+            else {
+                scores[i] = 0;
+            }
+        }
+    }
+
+    private int pickNext(MoveList moves, int ply, int start) {
+        int[] scores = moveScores[ply];
+        int best = start;
+        for (int i = start + 1; i < moves.size(); i++) {
+            if (scores[i] > scores[best]) best = i;
+        }
+        int move = moves.get(best);
+        int score = scores[best];
+        moves.set(best, moves.get(start));
+        scores[best] = scores[start];
+        moves.set(start, move);
+        scores[start] = score;
+        return move;
+    }
+
+    // Mate scores are stored relative to the node so they stay valid when reached through another path
+    private static int toTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) return score + ply;
+        if (score <= -MATE + MAX_PLY) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) return score - ply;
+        if (score <= -MATE + MAX_PLY) return score + ply;
+        return score;
+    }
+
+}
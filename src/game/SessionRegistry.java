@@ -0,0 +1,234 @@
+package game;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Every hosted game by id. Moves on a game are serialised by one of a fixed set of locks picked from the id,
+// so games on different stripes never contend and the lock count doesn't grow with the number of games.
+// Spectators are told about a game only after its lock is let go, so a slow one never holds up the players.
+public class SessionRegistry {
+
+    private static final int STRIPES = 256;
+    private static final int DEFAULT_CACHE = 1 << 16;
+
+    // Called with each update in order; must not block, as it runs on whichever player's thread delivers
+    interface Spectator {
+        void update(String line);
+    }
+
+    private static class Watcher {
+        final Spectator spectator;
+        // The last update already reflected in the position the spectator joined at
+        final long joined;
+
+        Watcher(Spectator spectator, long joined) {
+            this.spectator = spectator;
+            this.joined = joined;
+        }
+    }
+
+    private static class Update {
+        final long sequence;
+        final String line;
+
+        Update(long sequence, String line) {
+            this.sequence = sequence;
+            this.line = line;
+        }
+    }
+
+    static class Session {
+        final long id;
+        final Game game;
+        final CopyOnWriteArrayList<Watcher> spectators = new CopyOnWriteArrayList<>();
+        // Updates are numbered and queued under the game's lock, so the queue holds them in the order they
+        // happened, and then handed out by one thread at a time
+        private final ConcurrentLinkedQueue<Update> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean delivering = new AtomicBoolean();
+        private long sequence;
+
+        Session(long id, Game game) {
+            this.id = id;
+            this.game = game;
+        }
+
+        // Only with the game's lock held
+        void publish(String line) {
+            pending.add(new Update(++sequence, line));
+        }
+
+        // Without the lock: whoever gets in first delivers everything queued, including what other threads
+        // publish meanwhile, and checks again after letting go so nothing is left behind
+        void deliver() {
+            while (!pending.isEmpty() && delivering.compareAndSet(false, true)) {
+                try {
+                    Update update;
+                    while ((update = pending.poll()) != null) {
+                        for (Watcher watcher : spectators) {
+                            if (update.sequence > watcher.joined) watcher.spectator.update(update.line);
+                        }
+                    }
+                }
+                finally {
+                    delivering.set(false);
+                }
+            }
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final LongAdder moves = new LongAdder();
+    private final LatencyHistogram validation = new LatencyHistogram();
+    // Shared by every hosted game, so openings and positions many spectators look at are worked out once
+    private final PositionCache cache;
+
+    public SessionRegistry() {
+        this(DEFAULT_CACHE);
+    }
+
+    public SessionRegistry(int cachePositions) {
+        cache = new PositionCache(cachePositions);
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    // Throws IllegalArgumentException for a bad FEN
+    public long create(String fen) {
+        long id = nextId.getAndIncrement();
+        Game game = new Game(fen);
+        game.setPositionCache(cache);
+        sessions.put(id, new Session(id, game));
+        return id;
+    }
+
+    // Removed under the game's lock, so a move or watch that got the lock first finishes and any after it
+    // finds the game gone
+    public boolean close(long id) {
+        Session session;
+        ReentrantLock lock = lock(id);
+        lock.lock();
+        try {
+            session = sessions.remove(id);
+            if (session == null) return false;
+            session.publish("closed " + id);
+        }
+        finally {
+            lock.unlock();
+        }
+        session.deliver();
+        return true;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public long getMoves() {
+        return moves.sum();
+    }
+
+    public LatencyHistogram getValidation() {
+        return validation;
+    }
+
+    public PositionCache getCache() {
+        return cache;
+    }
+
+    // Validates the move in UCI notation against the game's legal moves and plays it. Returns the game
+    // status after the move, or null when the move isn't legal.
+    public GameStatus play(long id, String text) {
+        long start = System.nanoTime();
+        Session session;
+        GameStatus status;
+        ReentrantLock lock = lock(id);
+        lock.lock();
+        try {
+            session = find(id);
+            Game game = session.game;
+            int move = game.parseMove(text);
+            if (move == Move.NONE || !game.play(move)) return null;
+            status = game.getStatus();
+            validation.record(System.nanoTime() - start);
+            moves.increment();
+            if (!session.spectators.isEmpty()) session.publish("played " + id + " " + text + " " + status);
+        }
+        finally {
+            lock.unlock();
+        }
+        session.deliver();
+        return status;
+    }
+
+    // Adds the spectator and sends it the position it joins at, ahead of any update after it. Updates
+    // published before it joined but not yet delivered are already in that position, so it skips them.
+    public void watch(long id, Spectator spectator) {
+        ReentrantLock lock = lock(id);
+        lock.lock();
+        try {
+            Session session = find(id);
+            session.spectators.add(new Watcher(spectator, session.sequence));
+            spectator.update("watching " + id + " " + session.game.exportFen());
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public void unwatch(long id, Spectator spectator) {
+        Session session = sessions.get(id);
+        if (session != null) session.spectators.removeIf(watcher -> watcher.spectator == spectator);
+    }
+
+    // The legal moves in UCI notation, separated by spaces
+    public String legalMoves(long id) {
+        ReentrantLock lock = lock(id);
+        lock.lock();
+        try {
+            Session session = find(id);
+            MoveList moves = session.game.getLegalMoves();
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < moves.size(); i++) {
+                if (i > 0) sb.append(' ');
+                sb.append(Move.toString(moves.get(i)));
+            }
+            return sb.toString();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public String fen(long id) {
+        ReentrantLock lock = lock(id);
+        lock.lock();
+        try {
+            Session session = find(id);
+            return session.game.exportFen();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // Only with the game's lock held, so the game can't be closed while it is in use
+    private Session find(long id) {
+        Session session = sessions.get(id);
+        if (session == null) throw new IllegalArgumentException("Unknown game " + id);
+        return session;
+    }
+
+    // Consecutive ids land on different stripes
+    private ReentrantLock lock(long id) {
+        return locks[(int) (id ^ (id >>> 32)) & (STRIPES - 1)];
+    }
+
+}
@@ -0,0 +1,259 @@
+package game;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Hosts games for any number of clients over a line-based text protocol on a local socket:
+//   new [fen]            -> game <id>
+//   move <id> <uci>      -> ok <id> <uci> <status> | illegal <id> <uci>
+//   watch <id>           -> watching <id> <fen>, then played <id> <uci> <status> and closed <id> as they happen
+//   unwatch <id>         -> unwatched <id>
+//   fen <id>             -> fen <id> <fen>
+//   moves <id>           -> moves <id> <uci>...
+//   close <id>           -> closed <id>
+//   stats                -> stats games <n> moves <n> validation <percentiles> cache <counts>
+//   quit
+// Anything that goes wrong is answered with error <reason>. Each connection gets a thread reading its commands
+// and another writing its lines from a bounded queue; a spectator whose queue fills up is disconnected.
+public class SessionServer {
+
+    public static final int DEFAULT_PORT = 7878;
+    // Lines queued for a client before it counts as too far behind to keep
+    private static final int OUTGOING_LINES = 4096;
+    // Tells the writer the connection is over once everything before it has gone out
+    private static final Object END = new Object();
+
+    private final SessionRegistry registry;
+    private final ServerSocket server;
+    private final ExecutorService connections = connectionExecutor();
+    private volatile boolean closed;
+
+    public SessionServer(SessionRegistry registry, int port) throws IOException {
+        this.registry = registry;
+        this.server = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+    }
+
+    // Virtual threads when the runtime has them, looked up reflectively as the project targets Java 12;
+    // otherwise a growing pool of platform threads
+    static ExecutorService connectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "session-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public SessionRegistry getRegistry() {
+        return registry;
+    }
+
+    public void serve() throws IOException {
+        try {
+            while (!closed) {
+                Socket socket = server.accept();
+                connections.execute(new Connection(socket));
+            }
+        }
+        catch (IOException e) {
+            if (!closed) throw e;
+        }
+    }
+
+    // Serves on a daemon thread of its own and returns straight away
+    public void start() {
+        Thread acceptor = new Thread(() -> {
+            try {
+                serve();
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "session-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        connections.shutdownNow();
+    }
+
+    private class Connection implements Runnable, SessionRegistry.Spectator {
+        private final Socket socket;
+        private final BlockingQueue<Object> outgoing = new ArrayBlockingQueue<>(OUTGOING_LINES);
+        private final HashSet<Long> watching = new HashSet<>();
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        // The socket is set up here rather than on the accepting thread, so a client that has already gone
+        // only ends its own connection
+        @Override
+        public void run() {
+            Future<?> writer = null;
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+                socket.setTcpNoDelay(true);
+                Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+                writer = connections.submit(() -> write(out));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String[] tokens = line.trim().split("\\s+");
+                    if (tokens[0].equals("quit")) break;
+                    String reply;
+                    try {
+                        reply = handle(tokens, line);
+                    }
+                    catch (IllegalArgumentException e) {
+                        reply = "error " + e.getMessage();
+                    }
+                    catch (RuntimeException e) {
+                        reply = "error " + e;
+                    }
+                    if (reply != null) reply(reply);
+                }
+            }
+            catch (IOException | InterruptedException e) {
+                // The client went away
+            }
+            finally {
+                for (long id : watching) registry.unwatch(id, this);
+                if (writer == null || !outgoing.offer(END)) {
+                    if (writer != null) writer.cancel(true);
+                    closeSocket();
+                }
+            }
+        }
+
+        // Replies wait for room, which only holds up this client's own commands, unless the writer is gone
+        private void reply(String line) throws IOException, InterruptedException {
+            while (!outgoing.offer(line, 1, TimeUnit.SECONDS)) {
+                if (socket.isClosed()) throw new IOException("Connection closed");
+            }
+        }
+
+        // Flushes only once the queue runs dry, so a burst of updates goes out in as few packets as it can
+        private void write(Writer out) {
+            try {
+                Object line;
+                while ((line = outgoing.take()) != END) {
+                    out.write((String) line);
+                    out.write('\n');
+                    if (outgoing.isEmpty()) out.flush();
+                }
+                out.flush();
+            }
+            catch (IOException | InterruptedException e) {
+                // Disconnected
+            }
+            finally {
+                closeSocket();
+            }
+        }
+
+        // Closing the socket also ends the read loop, which then cleans up
+        private void closeSocket() {
+            try {
+                socket.close();
+            }
+            catch (IOException ignored) {
+            }
+        }
+
+        private String handle(String[] tokens, String line) {
+            switch (tokens[0]) {
+                case "new":
+                    String fen = line.trim().substring(3).trim();
+                    return "game " + registry.create(fen.isEmpty() ? Fen.START : fen);
+                case "move": {
+                    long id = id(tokens);
+                    if (tokens.length < 3) throw new IllegalArgumentException("Missing move");
+                    GameStatus status = registry.play(id, tokens[2]);
+                    return status == null ? "illegal " + id + " " + tokens[2] : "ok " + id + " " + tokens[2] + " " + status;
+                }
+                case "watch": {
+                    long id = id(tokens);
+                    registry.watch(id, this);
+                    watching.add(id);
+                    return null;
+                }
+                case "unwatch": {
+                    long id = id(tokens);
+                    registry.unwatch(id, this);
+                    watching.remove(id);
+                    return "unwatched " + id;
+                }
+                case "fen": {
+                    long id = id(tokens);
+                    return "fen " + id + " " + registry.fen(id);
+                }
+                case "moves": {
+                    long id = id(tokens);
+                    return "moves " + id + " " + registry.legalMoves(id);
+                }
+                case "close": {
+                    long id = id(tokens);
+                    if (!registry.close(id)) throw new IllegalArgumentException("Unknown game " + id);
+                    return "closed " + id;
+                }
+                case "stats":
+                    return "stats games " + registry.size() + " moves " + registry.getMoves() + " validation " +
+                            registry.getValidation() + " cache " + registry.getCache();
+                case "":
+                    return null;
+            }
+            throw new IllegalArgumentException("Unknown command " + tokens[0]);
+        }
+
+        private long id(String[] tokens) {
+            if (tokens.length < 2) throw new IllegalArgumentException("Missing game id");
+            return Long.parseLong(tokens[1]);
+        }
+
+        // Called by whichever thread delivers a game's updates, so it never waits: a spectator that has let
+        // its queue fill up is cut off rather than holding up the players
+        @Override
+        public void update(String line) {
+            if (!outgoing.offer(line)) closeSocket();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            }
+        }
+        SessionServer server = new SessionServer(new SessionRegistry(), port);
+        System.out.println("Serving games on port " + server.getPort());
+        server.serve();
+    }
+
+}
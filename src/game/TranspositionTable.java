@@ -0,0 +1,102 @@
+package game;
+
+import java.util.Arrays;
+
+public class TranspositionTable {
+
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+    public static final long NO_ENTRY = 0;
+
+    private static final int BUCKET_SIZE = 4;
+
+    // Entry data: bits 0-15 move, 16-31 score, 32-39 depth, 40-41 bound, 42-47 age, bit 48 always set
+    private static final long USED = 1L << 48;
+
+    // Each entry is two longs, the key xor the data followed by the data. Threads read and write without
+    // locking and a torn entry simply fails the key check on the next probe.
+    private final long[] table;
+    private final int bucketMask;
+    private int age;
+
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max(BUCKET_SIZE, (long) megabytes * 1024 * 1024 / 16);
+        int buckets = Integer.highestOneBit((int) Math.min(entries / BUCKET_SIZE, 1 << 26));
+        table = new long[buckets * BUCKET_SIZE * 2];
+        bucketMask = buckets - 1;
+    }
+
+    public long probe(long key) {
+        int base = bucket(key);
+        for (int i = base; i < base + BUCKET_SIZE * 2; i += 2) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key && data != NO_ENTRY) return data;
+        }
+        return NO_ENTRY;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        int base = bucket(key);
+        int replace = base;
+        int worst = Integer.MAX_VALUE;
+        for (int i = base; i < base + BUCKET_SIZE * 2; i += 2) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key || data == NO_ENTRY) {
+                // Keep a deeper result for the same position unless it is from an older search
+                if (data != NO_ENTRY && depth(data) > depth && age(data) == age && bound != EXACT) return;
+                if (move == Move.NONE && data != NO_ENTRY) move = move(data);
+                replace = i;
+                break;
+            }
+            // Otherwise evict the shallowest entry, treating entries from older searches as shallower
+            int value = depth(data) - (age(data) == age ? 0 : 256);
+            if (value < worst) {
+                worst = value;
+                replace = i;
+            }
+        }
+        long data = (move & 0xffffL) | ((score & 0xffffL) << 16) | ((long) (depth & 0xff) << 32) |
+                ((long) bound << 40) | ((long) age << 42) | USED;
+        table[replace] = key ^ data;
+        table[replace + 1] = data;
+    }
+
+    public void newSearch() {
+        age = (age + 1) & 63;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        age = 0;
+    }
+
+    public int capacity() {
+        return table.length / 2;
+    }
+
+    private int bucket(long key) {
+        return ((int) (key >>> 32) & bucketMask) * BUCKET_SIZE * 2;
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0xffff);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> 16);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> 32) & 0xff;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> 40) & 3;
+    }
+
+    private static int age(long data) {
+        return (int) (data >>> 42) & 63;
+    }
+
+}
@@ -0,0 +1,362 @@
+package game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Speaks UCI over stdin and stdout. Commands are read on the calling thread and searches run on a thread
+// of their own, so stop, ponderhit and isready are answered while a search is under way.
+public class Uci {
+
+    private static final String NAME = "Chess Master";
+    private static final String AUTHOR = "MichaelZhao21";
+    private static final int DEFAULT_HASH = 16;
+    private static final int MAX_HASH = 4096;
+    private static final int MAX_THREADS = 64;
+    private static final int MOVES_TO_GO = 30;
+    // Kept back from the clock for the time it takes the move to reach the GUI
+    private static final long MOVE_OVERHEAD = 30;
+    private static final long INFINITE_MILLIS = 1L << 40;
+
+    private final BufferedReader in;
+    private final PrintStream out;
+    private Board board = new Board();
+    private final MoveList moves = new MoveList();
+    private final ExecutorService searcher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "uci-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private int hashMegabytes = DEFAULT_HASH;
+    private int threads = 1;
+    private TranspositionTable table;
+    private ParallelSearch search;
+    private Future<?> running;
+    private volatile long started;
+    // While set the best move is held back, as UCI wants after go infinite and go ponder until stop or ponderhit
+    private boolean holding;
+
+    public Uci(InputStream in, PrintStream out) {
+        this.in = new BufferedReader(new InputStreamReader(in));
+        this.out = out;
+        Fen.load(board, Fen.START);
+    }
+
+    public void run() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            try {
+                if (!handle(line.trim().split("\\s+"))) break;
+            }
+            catch (RuntimeException e) {
+                send("info string " + e);
+            }
+        }
+        stopSearch();
+        if (search != null) search.shutdown();
+        searcher.shutdownNow();
+    }
+
+    // False once the GUI has asked us to quit
+    private boolean handle(String[] tokens) {
+        switch (tokens[0]) {
+            case "uci":
+                send("id name " + NAME);
+                send("id author " + AUTHOR);
+                send("option name Hash type spin default " + DEFAULT_HASH + " min 1 max " + MAX_HASH);
+                send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                send("option name Ponder type check default false");
+                send("uciok");
+                break;
+            case "isready":
+                send("readyok");
+                break;
+            case "setoption":
+                stopSearch();
+                setOption(tokens);
+                break;
+            case "ucinewgame":
+                stopSearch();
+                if (table != null) table.clear();
+                break;
+            case "position":
+                stopSearch();
+                position(tokens);
+                break;
+            case "go":
+                stopSearch();
+                go(tokens);
+                break;
+            case "stop":
+                stop();
+                break;
+            case "ponderhit":
+                ponderhit();
+                break;
+            case "quit":
+                return false;
+        }
+        return true;
+    }
+
+    private void setOption(String[] tokens) {
+        String name = null;
+        String value = null;
+        for (int i = 1; i + 1 < tokens.length; i++) {
+            if (tokens[i].equals("name")) name = tokens[i + 1];
+            if (tokens[i].equals("value")) value = tokens[i + 1];
+        }
+        if (name == null || value == null) return;
+        try {
+            if (name.equalsIgnoreCase("Hash")) {
+                hashMegabytes = Math.max(1, Math.min(MAX_HASH, Integer.parseInt(value)));
+                table = null;
+            }
+            else if (name.equalsIgnoreCase("Threads")) {
+                threads = Math.max(1, Math.min(MAX_THREADS, Integer.parseInt(value)));
+            }
+        }
+        catch (NumberFormatException e) {
+            send("info string Bad value for " + name + ": " + value);
+        }
+    }
+
+    // position [startpos | fen <fen>] [moves <move>...]
+    private void position(String[] tokens) {
+        int i = 1;
+        String fen = Fen.START;
+        if (i < tokens.length && tokens[i].equals("fen")) {
+            StringBuilder sb = new StringBuilder();
+            for (i++; i < tokens.length && !tokens[i].equals("moves"); i++) {
+                if (sb.length() > 0) sb.append(' ');
+                sb.append(tokens[i]);
+            }
+            fen = sb.toString();
+        }
+        else if (i < tokens.length && tokens[i].equals("startpos")) {
+            i++;
+        }
+
+        // Set up apart from the current board, which only changes once every move has been made
+        Board position = new Board();
+        try {
+            Fen.load(position, fen);
+        }
+        catch (IllegalArgumentException e) {
+            send("info string " + e.getMessage());
+            Fen.load(board, Fen.START);
+            return;
+        }
+        if (i < tokens.length && tokens[i].equals("moves")) {
+            for (i++; i < tokens.length; i++) {
+                int move = parseMove(position, tokens[i]);
+                if (move == Move.NONE) {
+                    send("info string Illegal move " + tokens[i]);
+                    return;
+                }
+                position.makeMove(move);
+            }
+        }
+        board = position;
+    }
+
+    private int parseMove(Board board, String text) {
+        MoveGenerator.generateLegal(board, moves);
+        for (int i = 0; i < moves.size(); i++) {
+            if (Move.toString(moves.get(i)).equals(text)) return moves.get(i);
+        }
+        return Move.NONE;
+    }
+
+    // go [wtime t] [btime t] [winc t] [binc t] [movestogo n] [movetime t] [depth n] [infinite] [ponder]
+    private void go(String[] tokens) {
+        long time = -1;
+        long increment = 0;
+        long moveTime = -1;
+        int movesToGo = MOVES_TO_GO;
+        int depth = Search.MAX_PLY;
+        boolean infinite = false;
+        boolean ponder = false;
+        String ours = board.whiteToMove ? "w" : "b";
+        for (int i = 1; i < tokens.length; i++) {
+            String token = tokens[i];
+            boolean hasValue = i + 1 < tokens.length;
+            if (token.equals("infinite")) {
+                infinite = true;
+            }
+            else if (token.equals("ponder")) {
+                ponder = true;
+            }
+            else if (hasValue && token.equals(ours + "time")) {
+                time = Long.parseLong(tokens[++i]);
+            }
+            else if (hasValue && token.equals(ours + "inc")) {
+                increment = Long.parseLong(tokens[++i]);
+            }
+            else if (hasValue && token.equals("movestogo")) {
+                movesToGo = Math.max(1, Integer.parseInt(tokens[++i]));
+            }
+            else if (hasValue && token.equals("movetime")) {
+                moveTime = Long.parseLong(tokens[++i]);
+            }
+            else if (hasValue && token.equals("depth")) {
+                depth = Math.max(1, Math.min(Search.MAX_PLY, Integer.parseInt(tokens[++i])));
+            }
+        }
+
+        // Like Game, half the budget is the soft limit for starting another iteration
+        long softMillis = INFINITE_MILLIS;
+        long hardMillis = INFINITE_MILLIS;
+        if (moveTime >= 0) {
+            softMillis = moveTime;
+            hardMillis = moveTime;
+        }
+        else if (time >= 0) {
+            long budget = Math.max(1, Math.min(time / movesToGo + increment / 2, time - MOVE_OVERHEAD));
+            softMillis = budget / 2;
+            hardMillis = budget;
+        }
+        else if (depth == Search.MAX_PLY) {
+            infinite = true;
+        }
+        if (infinite) {
+            softMillis = INFINITE_MILLIS;
+            hardMillis = INFINITE_MILLIS;
+        }
+
+        if (table == null) {
+            table = new TranspositionTable(hashMegabytes);
+            if (search != null) search.shutdown();
+            search = null;
+        }
+        if (search == null || search.getThreads() != threads) {
+            if (search != null) search.shutdown();
+            search = new ParallelSearch(table, threads);
+        }
+
+        Board position = new Board(board);
+        ParallelSearch current = search;
+        current.setListener((completed, score, move) -> info(position, current, completed, score, move));
+        current.prepare(ponder);
+        synchronized (this) {
+            holding = infinite || ponder;
+        }
+        long soft = softMillis;
+        long hard = hardMillis;
+        int maxDepth = depth;
+        started = System.nanoTime();
+        running = searcher.submit(() -> {
+            int best = current.think(position, soft, hard, maxDepth);
+            try {
+                synchronized (this) {
+                    while (holding) wait();
+                }
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            sendBestMove(position, best);
+        });
+    }
+
+    private void stop() {
+        synchronized (this) {
+            holding = false;
+            notifyAll();
+        }
+        if (search != null) search.stop();
+    }
+
+    // The opponent played the move we were pondering on, so the search carries on against the clock
+    private void ponderhit() {
+        if (search != null) search.ponderhit();
+        synchronized (this) {
+            holding = false;
+            notifyAll();
+        }
+    }
+
+    // Stops any search in progress and waits for its best move to go out
+    private void stopSearch() {
+        if (running == null) return;
+        stop();
+        try {
+            running.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            send("info string " + e.getCause());
+        }
+        running = null;
+    }
+
+    private void info(Board position, ParallelSearch search, int depth, int score, int move) {
+        long millis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        long nodes = search.getNodes();
+        StringBuilder sb = new StringBuilder("info depth ").append(depth);
+        if (Math.abs(score) >= Search.MATE - Search.MAX_PLY) {
+            int plies = Search.MATE - Math.abs(score);
+            sb.append(" score mate ").append(score > 0 ? (plies + 1) / 2 : -(plies / 2));
+        }
+        else {
+            sb.append(" score cp ").append(score);
+        }
+        sb.append(" nodes ").append(nodes).append(" nps ").append(nodes * 1000 / millis);
+        sb.append(" time ").append(millis).append(" pv");
+        for (int pvMove : principalVariation(position, move, depth)) {
+            sb.append(' ').append(Move.toString(pvMove));
+        }
+        send(sb.toString());
+    }
+
+    private void sendBestMove(Board position, int best) {
+        if (best == Move.NONE) {
+            send("bestmove 0000");
+            return;
+        }
+        int[] line = principalVariation(position, best, 2);
+        send("bestmove " + Move.toString(best) + (line.length > 1 ? " ponder " + Move.toString(line[1]) : ""));
+    }
+
+    // The best move followed by the table's moves from each position after it, as long as they stay legal
+    private int[] principalVariation(Board position, int first, int maxLength) {
+        Board line = new Board(position);
+        MoveList legal = new MoveList();
+        int[] pv = new int[maxLength];
+        int length = 0;
+        int move = first;
+        while (length < maxLength && move != Move.NONE) {
+            MoveGenerator.generateLegal(line, legal);
+            if (!legal.contains(move)) break;
+            pv[length++] = move;
+            line.makeMove(move);
+            if (line.isDraw()) break;
+            long entry = table.probe(line.key());
+            move = entry == TranspositionTable.NO_ENTRY ? Move.NONE : TranspositionTable.move(entry);
+        }
+        int[] result = new int[length];
+        System.arraycopy(pv, 0, result, 0, length);
+        return result;
+    }
+
+    private void send(String line) {
+        synchronized (out) {
+            out.println(line);
+            out.flush();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        new Uci(System.in, System.out).run();
+    }
+
+}
@@ -0,0 +1,301 @@
+package game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Replays every game in a directory of PGN and board files through Game on a work-stealing pool.
+// Results are handed to the caller through a bounded queue, so workers wait when the consumer falls behind.
+public class Validator {
+
+    private static final int QUEUE_CAPACITY = 1024;
+    // PGN files larger than this are split at game boundaries so one big archive still spreads across workers
+    private static final long SPLIT_BYTES = 4 << 20;
+    private static final byte[] GAME_START = "\n[Event ".getBytes(StandardCharsets.US_ASCII);
+
+    public static class Result {
+        public final Path file;
+        public long offset;
+        public String event = "?";
+        public String declared = "*";
+        public String actual = "*";
+        public int plies;
+        public GameStatus status;
+        public String illegal;
+        public long nanos;
+
+        Result(Path file) {
+            this.file = file;
+        }
+
+        // A final position that decides the game one way while the file records another result
+        public boolean mismatch() {
+            return !actual.equals("*") && !declared.equals("*") && !declared.equals(actual);
+        }
+
+        void finish(Game game) {
+            plies = game.getScore().size();
+            status = game.getStatus();
+            actual = game.getResult();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s@%d %s: %d plies, %s, declared %s%s%s, %.1f us", file.getFileName(), offset,
+                    event, plies, status, declared, mismatch() ? " (MISMATCH)" : "",
+                    illegal != null ? ", " + illegal : "", nanos / 1e3);
+        }
+    }
+
+    // Each worker thread owns one Game and reuses it for every game it replays
+    private static class EngineThread extends ForkJoinWorkerThread {
+        final Game game = new Game();
+
+        EngineThread(ForkJoinPool pool, boolean verifyMoves) {
+            super(pool);
+            game.setVerifyMoves(verifyMoves);
+        }
+    }
+
+    private final int parallelism;
+    private boolean verifyMoves;
+
+    public Validator(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public void setVerifyMoves(boolean verifyMoves) {
+        this.verifyMoves = verifyMoves;
+    }
+
+    public void validate(Path directory, Consumer<Result> sink) throws IOException, InterruptedException {
+        ArrayList<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.{pgn,txt}")) {
+            for (Path file : stream) files.add(file);
+        }
+
+        BlockingQueue<Result> results = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        ForkJoinPool pool = new ForkJoinPool(parallelism, owner -> new EngineThread(owner, verifyMoves), null, false);
+        try {
+            ForkJoinTask<Void> task = pool.submit(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ArrayList<RecursiveAction> tasks = new ArrayList<>();
+                    for (Path file : files) {
+                        tasks.add(file.toString().endsWith(".txt") ? new BoardTask(file, results) :
+                                new PgnTask(file, 0, -1, results));
+                    }
+                    invokeAll(tasks);
+                }
+            });
+
+            while (true) {
+                Result result = results.poll(50, TimeUnit.MILLISECONDS);
+                if (result != null) {
+                    sink.accept(result);
+                }
+                else if (task.isDone()) {
+                    while ((result = results.poll()) != null) sink.accept(result);
+                    break;
+                }
+            }
+            task.join();
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Game engine() {
+        return ((EngineThread) Thread.currentThread()).game;
+    }
+
+    private static void publish(BlockingQueue<Result> results, Result result) {
+        try {
+            results.put(result);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class BoardTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path file;
+        private final BlockingQueue<Result> results;
+
+        BoardTask(Path file, BlockingQueue<Result> results) {
+            this.file = file;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            long start = System.nanoTime();
+            Result result = new Result(file);
+            Game game = engine();
+            try {
+                game.loadBoardFile(file.toString());
+                result.finish(game);
+            }
+            catch (IOException | RuntimeException e) {
+                result.illegal = e.toString();
+            }
+            result.nanos = System.nanoTime() - start;
+            publish(results, result);
+        }
+    }
+
+    private static class PgnTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path file;
+        private final long start;
+        private long end;
+        private final BlockingQueue<Result> results;
+
+        // An end of -1 means the end of the file
+        PgnTask(Path file, long start, long end, BlockingQueue<Result> results) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.results = results;
+        }
+
+        // A file that can't be read is reported like an illegal game, as BoardTask does, rather than ending the run
+        @Override
+        protected void compute() {
+            long started = System.nanoTime();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (end < 0) end = channel.size();
+                if (end - start > SPLIT_BYTES) {
+                    long split = nextGameStart(channel, start + (end - start) / 2, end);
+                    if (split > start && split < end) {
+                        invokeAll(new PgnTask(file, start, split, results), new PgnTask(file, split, end, results));
+                        return;
+                    }
+                }
+                replay(channel);
+            }
+            catch (IOException | RuntimeException e) {
+                Result result = new Result(file);
+                result.offset = start;
+                result.illegal = e.toString();
+                result.nanos = System.nanoTime() - started;
+                publish(results, result);
+            }
+        }
+
+        private void replay(FileChannel channel) throws IOException {
+            Game game = engine();
+            PgnReader reader = new PgnReader(channel, start, end);
+            Result[] current = new Result[1];
+            // The listener fills in whichever game is being read
+            PgnReader.Listener listener = new PgnReader.Listener() {
+                @Override
+                public void tag(String name, String value) {
+                    if (name.equals("Event")) current[0].event = value;
+                }
+
+                @Override
+                public void illegal(String reason) {
+                    current[0].illegal = reason;
+                }
+
+                @Override
+                public void endGame(String result) {
+                    current[0].declared = result;
+                }
+            };
+
+            while (true) {
+                long started = System.nanoTime();
+                Result result = new Result(file);
+                current[0] = result;
+                if (!reader.nextGame(game, listener)) break;
+                result.offset = reader.getGameOffset();
+                result.finish(game);
+                result.nanos = System.nanoTime() - started;
+                publish(results, result);
+            }
+        }
+
+        // The offset of the first line starting with an Event tag at or after from, or -1 if there is none before end
+        private static long nextGameStart(FileChannel channel, long from, long end) throws IOException {
+            ByteBuffer block = ByteBuffer.allocate(1 << 16);
+            long position = from;
+            int matched = 0;
+            while (position < end) {
+                block.clear();
+                int n = channel.read(block, position);
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) {
+                    byte b = block.get(i);
+                    matched = b == GAME_START[matched] ? matched + 1 : b == GAME_START[0] ? 1 : 0;
+                    if (matched == GAME_START.length) {
+                        long found = position + i - GAME_START.length + 2;
+                        return found < end ? found : -1;
+                    }
+                }
+                position += n;
+            }
+            return -1;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.out.println("usage: Validator <directory> [--threads n] [--verbose] [--verify-moves]");
+            return;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean verbose = false;
+        boolean verifyMoves = false;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--verbose")) {
+                verbose = true;
+            }
+            else if (args[i].equals("--verify-moves")) {
+                verifyMoves = true;
+            }
+        }
+
+        long[] totals = new long[4];
+        boolean printAll = verbose;
+        long start = System.nanoTime();
+        Validator validator = new Validator(threads);
+        validator.setVerifyMoves(verifyMoves);
+        validator.validate(Paths.get(args[0]), result -> {
+            totals[0]++;
+            totals[1] += result.plies;
+            if (result.illegal != null) totals[2]++;
+            if (result.mismatch()) totals[3]++;
+            if (printAll || result.illegal != null || result.mismatch()) System.out.println(result);
+        });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%d games, %d plies, %d illegal, %d mismatched results in %.2f s " +
+                        "(%.0f games/min, %d threads)", totals[0], totals[1], totals[2], totals[3], seconds,
+                totals[0] / seconds * 60, threads));
+    }
+
+}
@@ -0,0 +1,41 @@
+package game;
+
+public class Zobrist {
+
+    static final long[][] PIECES = new long[16][64];
+    static final long[] CASTLING = new long[16];
+    static final long[] EP_FILE = new long[8];
+    static final long SIDE;
+
+    private static long seed = 0x2545f4914f6cdd1dL;
+
+    static {
+        for (int code = 0; code < 16; code++) {
+            if ((code & 7) >= 6) continue;
+            for (int sq = 0; sq < 64; sq++) {
+                PIECES[code][sq] = next();
+            }
+        }
+        long[] rights = {next(), next(), next(), next()};
+        for (int castling = 0; castling < 16; castling++) {
+            for (int i = 0; i < 4; i++) {
+                if ((castling & (1 << i)) != 0) CASTLING[castling] ^= rights[i];
+            }
+        }
+        for (int file = 0; file < 8; file++) {
+            EP_FILE[file] = next();
+        }
+        SIDE = next();
+    }
+
+    private Zobrist() {}
+
+    // SplitMix64, so the keys are the same on every run
+    private static long next() {
+        long z = (seed += 0x9e3779b97f4a7c15L);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+}